@@ -0,0 +1,136 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Elements are created and added by several threads at once, while others look them up,
+ * as ContentsCreator and the Browse requests do. Runs on a device, since the store caches with android.util.LruCache.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CatalogStoreConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int ELEMENTS = 2000;
+    private static final String PARENT_ID = "1";
+    private static final String CLASS = "object.item.imageItem";
+
+    @Test
+    public void createsAndAddsFromManyThreads() throws Exception {
+        final CatalogStore store = new CatalogStore();
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean creating = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        try {
+            List<Future<Integer>> creators = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final int thread = t;
+                creators.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        start.await();
+                        int added = 0;
+                        for (int i = 0; i < ELEMENTS; i++) {
+                            // every id is created by two threads, and only one of them is added
+                            int n = (thread / 2) * ELEMENTS + i;
+                            ContentElement element = store.createItem(idOf(n), PARENT_ID, CLASS);
+                            element.setTitle(titleOf(n));
+                            element.setLocalPath("/storage/DCIM/100RICOH/" + titleOf(n) + ".JPG");
+                            element.setLength(n);
+                            element.setDate("2018-10-01T12:00:00+09:00");
+                            if (store.add(element)) {
+                                added++;
+                            }
+                        }
+                        return added;
+                    }
+                }));
+            }
+            // a reader never sees an element before its creator has written it
+            Future<Integer> reader = executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    start.await();
+                    int found = 0;
+                    while (creating.get()) {
+                        for (int n = 0; n < THREADS / 2 * ELEMENTS; n += 97) {
+                            ContentElement element = store.get(idOf(n));
+                            if (element != null) {
+                                assertEquals(titleOf(n), element.getTitle());
+                                assertEquals(n, element.getLength());
+                                found++;
+                            }
+                        }
+                    }
+                    return found;
+                }
+            });
+
+            start.countDown();
+            int added = 0;
+            for (Future<Integer> creator : creators) {
+                added += creator.get(60, TimeUnit.SECONDS);
+            }
+            creating.set(false);
+            reader.get(60, TimeUnit.SECONDS);
+
+            int expected = THREADS / 2 * ELEMENTS;
+            assertEquals(expected, added);
+            assertEquals(expected, store.size());
+            Set<Integer> rows = new HashSet<>();
+            for (int n = 0; n < expected; n++) {
+                ContentElement element = store.get(idOf(n));
+                assertNotNull(idOf(n), element);
+                assertEquals(idOf(n), element.getId());
+                assertEquals(PARENT_ID, element.getParentId());
+                assertEquals(CLASS, element.getClazz());
+                assertEquals(titleOf(n), element.getTitle());
+                assertEquals("/storage/DCIM/100RICOH/" + titleOf(n) + ".JPG", element.getLocalPath());
+                assertEquals(n, element.getLength());
+                assertTrue(rows.add(element.getRow()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String idOf(int n) {
+        return "/R" + n + ".JPG";
+    }
+
+    private static String titleOf(int n) {
+        return "R" + n;
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inclusive byte range [start, end] of a resource, as requested by a Range header.
+ */
+public class ByteRange {
+
+    private static final String UNIT = "bytes=";
+    // More ranges than this in one request is treated as a malformed header.
+    private static final int MAX_RANGES = 16;
+
+    private final long start;
+    private final long end;
+
+    public ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public long getStart() { return this.start; }
+
+    public long getEnd() { return this.end; }
+
+    public long getLength() { return this.end - this.start + 1; }
+
+    public String toContentRange(long totalSize) {
+        return "bytes " + start + "-" + end + "/" + totalSize;
+    }
+
+    @Override
+    public String toString() {
+        return start + "-" + end;
+    }
+
+    /**
+     * Parse a Range header such as "bytes=0-99,5000-5999" or "bytes=-500".
+     *
+     * @param rangeHeader value of the Range header
+     * @param totalSize size of the resource
+     * @return satisfiable ranges clipped to the resource in request order (empty if none is satisfiable),
+     * or null if the header is malformed or has no range at all, and should be ignored
+     */
+    public static List<ByteRange> parse(String rangeHeader, long totalSize) {
+        String value = rangeHeader.trim();
+        if (!value.regionMatches(true, 0, UNIT, 0, UNIT.length())) {
+            return null;
+        }
+
+        String[] specs = value.substring(UNIT.length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        boolean parsed = false;
+        for (String spec : specs) {
+            spec = spec.trim();
+            if (spec.isEmpty()) {
+                continue; // an empty element of the list, as in "bytes=0-99,"
+            }
+            parsed = true;
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+
+            long start, end;
+            try {
+                if (first.isEmpty()) {
+                    // suffix range: the last N bytes
+                    long suffix = Long.parseLong(last);
+                    if (suffix <= 0) continue;
+                    start = Math.max(0, totalSize - suffix);
+                    end = totalSize - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    if (last.isEmpty()) {
+                        end = totalSize - 1;
+                    } else {
+                        end = Long.parseLong(last);
+                        if (end < start) {
+                            return null;
+                        }
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+
+            if (start >= totalSize) continue;
+            ranges.add(new ByteRange(start, Math.min(end, totalSize - 1)));
+        }
+        return parsed ? ranges : null;
+    }
+}
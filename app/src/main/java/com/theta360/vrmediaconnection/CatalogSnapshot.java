@@ -0,0 +1,187 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import com.theta360.vrmediaconnection.network.ImageInfo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Listing of the camera saved in a binary file, so that the contents can be created at startup without the OSC API.
+ * The snapshot keeps the state fingerprint and the modification time of DCIM at the listing;
+ * it is up to date if either of them is unchanged.
+ */
+public class CatalogSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogSnapshot.class);
+
+    private static final int MAGIC = 0x564d4331; // "VMC1"
+    private static final int VERSION = 1;
+
+    private static final byte FORMAT_JPEG = 0;
+    private static final byte FORMAT_MPEG = 1;
+
+    private final String fingerprint;
+    private final long dcimStamp;
+    private final List<ImageInfo> files;
+
+    public CatalogSnapshot(String fingerprint, long dcimStamp, Collection<ImageInfo> files) {
+        this.fingerprint = fingerprint;
+        this.dcimStamp = dcimStamp;
+        this.files = Collections.unmodifiableList(new ArrayList<>(files));
+    }
+
+    public String getFingerprint() { return this.fingerprint; }
+
+    public long getDcimStamp() { return this.dcimStamp; }
+
+    public List<ImageInfo> getFiles() { return this.files; }
+
+    /**
+     * @return latest modification time of DCIM and the directories of the camera in it.
+     * A directory is modified when a file is added to or removed from it.
+     */
+    public static long dcimStamp() {
+        File dcim = new File(Constants.Storage.DCIM);
+        long stamp = dcim.lastModified();
+        File[] dirs = dcim.listFiles();
+        if (dirs == null) return stamp;
+        for (File dir : dirs) {
+            if (dir.isDirectory() && dir.getName().endsWith("RICOH")) {
+                stamp = Math.max(stamp, dir.lastModified());
+            }
+        }
+        return stamp;
+    }
+
+    /**
+     * @return the snapshot, or null if the file does not exist or is broken
+     */
+    public static CatalogSnapshot read(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                logger.warn("unknown catalog snapshot: {}", file.getPath());
+                return null;
+            }
+
+            String fingerprint = getString(buffer);
+            long dcimStamp = buffer.getLong();
+            int count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining()) {
+                throw new IllegalArgumentException("broken count: " + count);
+            }
+            List<ImageInfo> files = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                ImageInfo info = new ImageInfo();
+                info.setFileName(getString(buffer));
+                info.setFileId(getString(buffer));
+                info.setFileSize(buffer.getLong());
+                info.setWidth(buffer.getInt());
+                info.setHeight(buffer.getInt());
+                info.setCaptureDate(getString(buffer));
+                info.setFileFormat(buffer.get() == FORMAT_MPEG
+                        ? ImageInfo.FILE_FORMAT_CODE_EXIF_MPEG : ImageInfo.FILE_FORMAT_CODE_EXIF_JPEG);
+                info.setProjectionType(getString(buffer));
+                files.add(info);
+            }
+            return new CatalogSnapshot(fingerprint, dcimStamp, files);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            logger.warn("failed to read catalog snapshot {}. {}", file.getPath(), e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Write the snapshot to the file. The file is replaced only when the whole snapshot is written.
+     */
+    public boolean write(File file) {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            putString(out, fingerprint);
+            out.writeLong(dcimStamp);
+            out.writeInt(files.size());
+            for (ImageInfo info : files) {
+                putString(out, info.getFileName());
+                putString(out, info.getFileId());
+                out.writeLong(info.getFileSize());
+                out.writeInt(info.getWidth());
+                out.writeInt(info.getHeight());
+                putString(out, info.getCaptureDate());
+                out.writeByte(ImageInfo.FILE_FORMAT_CODE_EXIF_MPEG.equals(info.getFileFormat()) ? FORMAT_MPEG : FORMAT_JPEG);
+                putString(out, info.getProjectionType());
+            }
+        } catch (IOException e) {
+            logger.warn("failed to write catalog snapshot {}. {}", tmp.getPath(), e.getMessage());
+            tmp.delete();
+            return false;
+        }
+        if (!tmp.renameTo(file)) {
+            logger.warn("failed to rename {}.", tmp.getPath());
+            tmp.delete();
+            return false;
+        }
+        return true;
+    }
+
+    // a string is the length of its UTF-8 bytes followed by the bytes; -1 means null.
+    private static void putString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new IllegalArgumentException("broken string length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import com.theta360.vrmediaconnection.network.HttpListListener;
+import com.theta360.vrmediaconnection.network.ImageInfo;
+
+import java.util.Map;
+
+/**
+ * Source of the listing of the media files of the camera.
+ * A source which fails passes no file to the listener, so that the files can be listed by another source instead.
+ */
+public interface CatalogSource {
+
+    /**
+     * @param listed files listed before by their file ids, which a source may reuse for the files which are unchanged
+     * @param listener listener which receives the listed files page by page
+     * @return number of the listed files, or -1 if the listing failed
+     */
+    int list(Map<String, ImageInfo> listed, HttpListListener listener);
+}
@@ -0,0 +1,413 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import android.util.LruCache;
+
+import org.fourthline.cling.support.model.DIDLObject;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Columnar storage of the attributes of the elements.
+ * An element is a row, and its attributes are kept in arrays by column. A URI or a path is split into
+ * an interned directory and the file name, and the MIME type is interned as well.
+ * Rows are allocated in chunks which never move, and the row of a removed element is never reused nor cleared,
+ * so that an element referred to by an old snapshot, a cache or a queued task reads its own values without any check.
+ * The rows of the removed elements are dropped when the catalog is built again from its snapshot at the next start,
+ * which has only the files that exist; only the cached DIDL object of a removed row is released at once.
+ * Ids are looked up without any lock through an open addressing table of rows.
+ * The DIDL object of an item is built from its row when it is needed, and only a bounded number of them are kept.
+ */
+public class CatalogStore {
+
+    public static final int LOCAL_URI = 0;
+    public static final int VIRTUAL_URI = 1;
+    public static final int LOCAL_PATH = 2;
+    private static final int PATH_COLUMNS = 3;
+
+    private static final int CHUNK_SHIFT = 8;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_TABLE_SIZE = 64;
+    private static final int EMPTY = -1;
+    private static final int DELETED = -2;
+    private static final int NONE = -1;
+
+    // written under the lock of this object, read without any lock.
+    private volatile Chunk[] chunks = new Chunk[0];
+    private volatile String[] strings = new String[]{""};
+    private volatile int[] table = newTable(INITIAL_TABLE_SIZE);
+
+    private final Map<String, Integer> stringIndex = new ConcurrentHashMap<>();
+    private final LruCache<Integer, DIDLObject> didlObjects = new LruCache<>(Constants.Cache.DIDL_OBJECTS);
+    private int rowCount;
+    // slots of the table which are not empty, including the deleted ones
+    private int usedSlots;
+    private int size;
+
+    public CatalogStore() {
+        stringIndex.put("", 0);
+    }
+
+    /**
+     * Allocate a row for the element of the DIDL object, which is kept as it is.
+     * The element is not found by its id until it is added.
+     */
+    public ContentElement create(String id, DIDLObject didlObject) {
+        ContentElement element = create(id, didlObject.getParentID(), didlObject.getClazz().getValue());
+        int row = element.getRow();
+        chunk(row).didlObjects[row & CHUNK_MASK] = didlObject;
+        chunk(row).titles[row & CHUNK_MASK] = didlObject.getTitle() != null ? didlObject.getTitle() : "";
+        return element;
+    }
+
+    /**
+     * Allocate a row for an item whose DIDL object is built from the row when it is needed.
+     */
+    public ContentElement createItem(String id, String parentId, String clazz) {
+        return create(id, parentId, clazz);
+    }
+
+    // only the allocation takes the lock; the new row is written by its creator alone until it is added.
+    private ContentElement create(String id, String parentId, String clazz) {
+        int row;
+        synchronized (this) {
+            row = allocateRow();
+        }
+        Chunk chunk = chunk(row);
+        int index = row & CHUNK_MASK;
+        ContentElement element = new ContentElement(this, row);
+        chunk.ids[index] = id;
+        chunk.parents[index] = parentId != null ? intern(parentId) : NONE;
+        chunk.classes[index] = intern(clazz);
+        chunk.elements[index] = element;
+        chunk.titles[index] = "";
+        Arrays.fill(chunk.names, index * PATH_COLUMNS, (index + 1) * PATH_COLUMNS, "");
+        chunk.profiles[index] = NONE;
+        chunk.dateTimes.set(index, Long.MIN_VALUE);
+        return element;
+    }
+
+    /**
+     * @return false if an element of the same id has been added
+     */
+    public synchronized boolean add(ContentElement element) {
+        String id = getId(element.getRow());
+        if (find(id) >= 0) {
+            return false;
+        }
+        if ((usedSlots + 1) * 2 > table.length) {
+            rehash(size + 1);
+        }
+
+        int[] slots = table;
+        int slot = slotOf(id, slots.length);
+        while (slots[slot] >= 0) {
+            slot = (slot + 1) & (slots.length - 1);
+        }
+        if (slots[slot] == EMPTY) usedSlots++;
+        slots[slot] = element.getRow();
+        chunk(element.getRow()).added[element.getRow() & CHUNK_MASK] = true;
+        size++;
+        // publishes the row to the readers of the table
+        table = slots;
+        return true;
+    }
+
+    public ContentElement get(String id) {
+        int row = find(id);
+        return row >= 0 ? chunk(row).elements[row & CHUNK_MASK] : null;
+    }
+
+    /**
+     * @return the removed element, or null if there is no element of the id
+     */
+    public synchronized ContentElement remove(String id) {
+        int[] slots = table;
+        int slot = slotOf(id, slots.length);
+        while (slots[slot] != EMPTY) {
+            int row = slots[slot];
+            if (row >= 0 && id.equals(getId(row))) {
+                slots[slot] = DELETED;
+                size--;
+                table = slots;
+                invalidate(row);
+                return chunk(row).elements[row & CHUNK_MASK];
+            }
+            slot = (slot + 1) & (slots.length - 1);
+        }
+        return null;
+    }
+
+    public int size() { return this.size; }
+
+    public String getId(int row) { return chunk(row).ids[row & CHUNK_MASK]; }
+
+    public DIDLObject getDIDLObject(int row) {
+        Chunk chunk = chunk(row);
+        DIDLObject didlObject = chunk.didlObjects[row & CHUNK_MASK];
+        if (didlObject != null) {
+            return didlObject;
+        }
+        int version;
+        synchronized (didlObjects) {
+            didlObject = didlObjects.get(row);
+            version = chunk.versions[row & CHUNK_MASK];
+        }
+        if (didlObject == null) {
+            // concurrent misses may build the same object; either of them is kept,
+            // unless the row has changed since the build started.
+            didlObject = DIDLItemBuilder.build(chunk.elements[row & CHUNK_MASK]);
+            synchronized (didlObjects) {
+                if (chunk.versions[row & CHUNK_MASK] == version) {
+                    didlObjects.put(row, didlObject);
+                }
+            }
+        }
+        return didlObject;
+    }
+
+    public String getParentId(int row) {
+        int parent = chunk(row).parents[row & CHUNK_MASK];
+        return parent != NONE ? strings[parent] : null;
+    }
+
+    public String getClazz(int row) { return strings[chunk(row).classes[row & CHUNK_MASK]]; }
+
+    public String getTitle(int row) { return chunk(row).titles[row & CHUNK_MASK]; }
+
+    public void setTitle(int row, String title) {
+        chunk(row).titles[row & CHUNK_MASK] = title;
+        changed(row);
+    }
+
+    /**
+     * @param column LOCAL_URI, VIRTUAL_URI or LOCAL_PATH
+     */
+    public String getPath(int row, int column) {
+        Chunk chunk = chunk(row);
+        int index = (row & CHUNK_MASK) * PATH_COLUMNS + column;
+        String prefix = strings[chunk.prefixes[index]];
+        String name = chunk.names[index];
+        return prefix.isEmpty() ? name : prefix + name;
+    }
+
+    public void setPath(int row, int column, String path) {
+        Chunk chunk = chunk(row);
+        int index = (row & CHUNK_MASK) * PATH_COLUMNS + column;
+        int separator = path.lastIndexOf('/') + 1;
+        String name = path.substring(separator);
+        // the URIs and the path of an element usually end with the same file name, which is kept once.
+        int first = (row & CHUNK_MASK) * PATH_COLUMNS;
+        for (int i = first; i < first + PATH_COLUMNS; i++) {
+            if (i != index && name.equals(chunk.names[i])) {
+                name = chunk.names[i];
+                break;
+            }
+        }
+        chunk.prefixes[index] = intern(path.substring(0, separator));
+        chunk.names[index] = name;
+        changed(row);
+    }
+
+    public String getMimeType(int row) { return strings[chunk(row).mimeTypes[row & CHUNK_MASK]]; }
+
+    // the header profile is resolved once, when the MIME type is set.
+    public void setMimeType(int row, String mimeType) {
+        Chunk chunk = chunk(row);
+        HeaderProfile profile = HeaderProfile.of(mimeType);
+        chunk.mimeTypes[row & CHUNK_MASK] = intern(mimeType);
+        chunk.profiles[row & CHUNK_MASK] = (byte) (profile != null ? profile.ordinal() : NONE);
+        changed(row);
+    }
+
+    public HeaderProfile getHeaderProfile(int row) { return HeaderProfile.of(chunk(row).profiles[row & CHUNK_MASK]); }
+
+    public long getLength(int row) { return chunk(row).lengths.get(row & CHUNK_MASK); }
+
+    // the length of a dummy content changes when the correction is done, which is the size of its res.
+    public void setLength(int row, long length) {
+        chunk(row).lengths.set(row & CHUNK_MASK, length);
+        changed(row);
+    }
+
+    public long getLastModified(int row) { return chunk(row).lastModifieds.get(row & CHUNK_MASK); }
+
+    public void setLastModified(int row, long lastModified) {
+        chunk(row).lastModifieds.set(row & CHUNK_MASK, lastModified);
+        changed(row);
+    }
+
+    public String getDate(int row) { return chunk(row).dates[row & CHUNK_MASK]; }
+
+    // the instant of the date is kept with it, so that dates of any offset are compared as numbers.
+    public void setDate(int row, String date) {
+        IsoDate time = IsoDate.parse(date);
+        chunk(row).dates[row & CHUNK_MASK] = date;
+        chunk(row).dateTimes.set(row & CHUNK_MASK, time != null ? time.getStart() : Long.MIN_VALUE);
+        changed(row);
+    }
+
+    public long getDateTime(int row) { return chunk(row).dateTimes.get(row & CHUNK_MASK); }
+
+    public int getWidth(int row) { return chunk(row).widths[row & CHUNK_MASK]; }
+
+    public int getHeight(int row) { return chunk(row).heights[row & CHUNK_MASK]; }
+
+    public void setSize(int row, int width, int height) {
+        Chunk chunk = chunk(row);
+        chunk.widths[row & CHUNK_MASK] = width;
+        chunk.heights[row & CHUNK_MASK] = height;
+        changed(row);
+    }
+
+    public int getResolutionWidth(int row) { return chunk(row).resolutionWidths[row & CHUNK_MASK]; }
+
+    public int getResolutionHeight(int row) { return chunk(row).resolutionHeights[row & CHUNK_MASK]; }
+
+    public void setResolution(int row, int width, int height) {
+        Chunk chunk = chunk(row);
+        chunk.resolutionWidths[row & CHUNK_MASK] = width;
+        chunk.resolutionHeights[row & CHUNK_MASK] = height;
+        changed(row);
+    }
+
+    private int allocateRow() {
+        int row = rowCount;
+        if ((row >>> CHUNK_SHIFT) == chunks.length) {
+            Chunk[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+            grown[chunks.length] = new Chunk();
+            chunks = grown;
+        }
+        rowCount++;
+        return row;
+    }
+
+    // a row which has not been added yet is seen by its creator alone, so that it has nothing to invalidate.
+    private void changed(int row) {
+        if (chunk(row).added[row & CHUNK_MASK]) {
+            invalidate(row);
+        }
+    }
+
+    // the version and the cache are changed together, so that an object built before is not put afterwards.
+    private void invalidate(int row) {
+        synchronized (didlObjects) {
+            chunk(row).versions[row & CHUNK_MASK]++;
+            didlObjects.remove(row);
+        }
+    }
+
+    private Chunk chunk(int row) {
+        return chunks[row >>> CHUNK_SHIFT];
+    }
+
+    private int find(String id) {
+        int[] slots = table;
+        int slot = slotOf(id, slots.length);
+        while (slots[slot] != EMPTY) {
+            int row = slots[slot];
+            // a row being added may be seen before its chunk.
+            if (row >= 0 && (row >>> CHUNK_SHIFT) < chunks.length && id.equals(getId(row))) {
+                return row;
+            }
+            slot = (slot + 1) & (slots.length - 1);
+        }
+        return EMPTY;
+    }
+
+    // a string interned before is found without the lock, which is the case for almost every call.
+    private int intern(String value) {
+        Integer index = stringIndex.get(value);
+        if (index != null) {
+            return index;
+        }
+        synchronized (this) {
+            index = stringIndex.get(value);
+            if (index != null) {
+                return index;
+            }
+            // the strings are published before the index, so that the index is never ahead of them.
+            String[] grown = Arrays.copyOf(strings, strings.length + 1);
+            grown[strings.length] = value;
+            strings = grown;
+            stringIndex.put(value, strings.length - 1);
+            return strings.length - 1;
+        }
+    }
+
+    // the deleted slots are dropped, so that the table is rebuilt into a new array.
+    private void rehash(int expected) {
+        int length = INITIAL_TABLE_SIZE;
+        while (length < expected * 4) {
+            length <<= 1;
+        }
+        int[] slots = newTable(length);
+        for (int row : table) {
+            if (row < 0) continue;
+            int slot = slotOf(getId(row), length);
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & (length - 1);
+            }
+            slots[slot] = row;
+        }
+        usedSlots = size;
+        table = slots;
+    }
+
+    private static int slotOf(String id, int length) {
+        int hash = id.hashCode();
+        return (hash ^ (hash >>> 16)) & (length - 1);
+    }
+
+    private static int[] newTable(int length) {
+        int[] slots = new int[length];
+        Arrays.fill(slots, EMPTY);
+        return slots;
+    }
+
+    private static final class Chunk {
+        private final String[] ids = new String[CHUNK_SIZE];
+        // only the objects given at the creation, such as the containers
+        private final DIDLObject[] didlObjects = new DIDLObject[CHUNK_SIZE];
+        // incremented whenever a cached DIDL object of the row becomes stale
+        private final int[] versions = new int[CHUNK_SIZE];
+        // set when the row is added, before it is published through the table
+        private final boolean[] added = new boolean[CHUNK_SIZE];
+        private final int[] parents = new int[CHUNK_SIZE];
+        private final int[] classes = new int[CHUNK_SIZE];
+        private final ContentElement[] elements = new ContentElement[CHUNK_SIZE];
+        private final String[] titles = new String[CHUNK_SIZE];
+        private final int[] prefixes = new int[CHUNK_SIZE * PATH_COLUMNS];
+        private final String[] names = new String[CHUNK_SIZE * PATH_COLUMNS];
+        private final int[] mimeTypes = new int[CHUNK_SIZE];
+        private final byte[] profiles = new byte[CHUNK_SIZE];
+        private final String[] dates = new String[CHUNK_SIZE];
+        // changed while they are read, so that a value of 64 bits is never seen half written
+        private final AtomicLongArray lengths = new AtomicLongArray(CHUNK_SIZE);
+        private final AtomicLongArray lastModifieds = new AtomicLongArray(CHUNK_SIZE);
+        private final AtomicLongArray dateTimes = new AtomicLongArray(CHUNK_SIZE);
+        private final int[] widths = new int[CHUNK_SIZE];
+        private final int[] heights = new int[CHUNK_SIZE];
+        private final int[] resolutionWidths = new int[CHUNK_SIZE];
+        private final int[] resolutionHeights = new int[CHUNK_SIZE];
+    }
+}
@@ -40,12 +40,26 @@ public final class Constants {
         public static final String MP4 = "http-get:*:video/mp4:DLNA.ORG_OP=01;DLNA.ORG_CI=0;DLNA.ORG_FLAGS=01500000000000000000000000000000";
     }
 
+    public static class ContentFeatures {
+        public static final String JPEG = "DLNA.ORG_PN=JPEG_LRG;DLNA.ORG_OP=01;DLNA.ORG_CI=0";
+        public static final String MP4 = "DLNA.ORG_PN=AVC_MP4_BL_CIF15_AAC_520;DLNA.ORG_OP=01;DLNA.ORG_CI=0";
+    }
+
     public static class Storage {
         public static final String DCIM = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DCIM).getPath();
         public static final String TMP_DIR = Environment.getExternalStorageDirectory().getPath() + "/Converted";
         public static final String CORRECTED_DIR = DCIM + "/VRMediaConnection";
     }
 
+    public static class Cache {
+        public static final String THUMBNAIL_DIR_NAME = "thumbnails";
+        public static final int THUMBNAIL_MEMORY_BYTES = 4 * 1024 * 1024; // 4MB
+        public static final long THUMBNAIL_DISK_BYTES = 64 * 1024 * 1024L; // 64MB
+        public static final int BROWSE_ENTRIES = 128;
+        public static final String CATALOG_FILE_NAME = "catalog.bin";
+        public static final int DIDL_OBJECTS = 512;
+    }
+
     public static class Content {
         public static final String CREATOR = "RICOH THETA";
 
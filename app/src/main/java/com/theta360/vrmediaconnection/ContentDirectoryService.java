@@ -16,13 +16,15 @@
 
 package com.theta360.vrmediaconnection;
 
+import android.os.SystemClock;
+import android.util.LruCache;
+
+import org.fourthline.cling.binding.annotations.UpnpStateVariable;
 import org.fourthline.cling.support.contentdirectory.AbstractContentDirectoryService;
 import org.fourthline.cling.support.contentdirectory.ContentDirectoryErrorCode;
 import org.fourthline.cling.support.contentdirectory.ContentDirectoryException;
-import org.fourthline.cling.support.contentdirectory.DIDLParser;
 import org.fourthline.cling.support.model.BrowseFlag;
 import org.fourthline.cling.support.model.BrowseResult;
-import org.fourthline.cling.support.model.DIDLContent;
 import org.fourthline.cling.support.model.DIDLObject;
 import org.fourthline.cling.support.model.SortCriterion;
 import org.fourthline.cling.support.model.container.Container;
@@ -30,14 +32,71 @@ import org.fourthline.cling.support.model.item.Item;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class ContentDirectoryService extends AbstractContentDirectoryService {
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ContentDirectoryService extends AbstractContentDirectoryService implements ContentsListener {
 
     private static final Logger logger = LoggerFactory.getLogger(ContentDirectoryService.class);
+    private static final int EVENT_MODERATION_MS = 200;
+
+    // "containerID,updateID" pairs of the containers changed in the current moderation window.
+    @UpnpStateVariable(sendEvents = true, defaultValue = "", eventMaximumRateMilliseconds = EVENT_MODERATION_MS)
+    private String containerUpdateIDs = "";
+    private final Map<String, Long> changedContainers = new LinkedHashMap<>();
+    private long lastChangeTime;
 
     private Contents contents;
+    private final LruCache<String, CachedResult> browseCache = new LruCache<>(Constants.Cache.BROWSE_ENTRIES);
+    // actions are executed on the threads of the UPnP service, each of them reuses its own buffer.
+    private final ThreadLocal<DIDLWriter> didlWriter = new ThreadLocal<DIDLWriter>() {
+        @Override
+        protected DIDLWriter initialValue() {
+            return new DIDLWriter();
+        }
+    };
 
     public ContentDirectoryService(Contents contents) {
+        super(SearchIndex.CAPABILITIES, SortOrder.CAPABILITIES);
         this.contents = contents;
+        contents.addListener(this);
+    }
+
+    public synchronized String getContainerUpdateIDs() {
+        return containerUpdateIDs;
+    }
+
+    @Override
+    public void onContainerUpdated(String containerId, long containerUpdateId) {
+        String oldValue;
+        String newValue;
+        synchronized (this) {
+            // the changes are accumulated while they are moderated into one event.
+            long now = SystemClock.elapsedRealtime();
+            if (now - lastChangeTime > EVENT_MODERATION_MS) {
+                changedContainers.clear();
+            }
+            lastChangeTime = now;
+            changedContainers.remove(containerId);
+            changedContainers.put(containerId, containerUpdateId);
+
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, Long> entry : changedContainers.entrySet()) {
+                if (sb.length() > 0) sb.append(',');
+                sb.append(entry.getKey()).append(',').append(entry.getValue());
+            }
+            oldValue = containerUpdateIDs;
+            newValue = sb.toString();
+            containerUpdateIDs = newValue;
+        }
+        logger.debug("container updated: {} ContainerUpdateIDs: {}", containerId, newValue);
+
+        // fired outside of the lock, the listener of the service manager reads the state variables.
+        getPropertyChangeSupport().firePropertyChange("ContainerUpdateIDs", oldValue, newValue);
+        changeSystemUpdateID();
     }
 
     @Override
@@ -48,9 +107,9 @@ public class ContentDirectoryService extends AbstractContentDirectoryService {
 
         logger.debug("browse objectID: " + objectID);
 
-        try {
-            DIDLContent didl = new DIDLContent();
+        SortOrder order = toSortOrder(orderby);
 
+        try {
             ContentElement element = contents.getContentElement(objectID);
             if (element == null) {
                 logger.warn("failed to get contentElement. id [{}] is not found.", objectID);
@@ -63,29 +122,22 @@ public class ContentDirectoryService extends AbstractContentDirectoryService {
                 return new BrowseResult("", 0, 0);
             }
 
-            if (didlObject instanceof Item) {
-                didl.addItem((Item) didlObject);
-                return new BrowseResult(new DIDLParser().generate(didl), 1, 1);
-            }
-
-            if (browseFlag == BrowseFlag.METADATA) {
-                didl.addContainer((Container) didlObject);
-                return new BrowseResult(new DIDLParser().generate(didl), 1, 1);
-            }
-
-            for (Container container : ((Container) didlObject).getContainers()) {
-                didl.addContainer(container);
-            }
+            // the version is read before the result is generated,
+            // so that a change during the generation makes the cached result stale at once.
+            String versionId = element.isContainer() ? objectID : element.getParentId();
+            long version = contents.getContainerUpdateId(versionId);
+            long[] versions = versionsOf(objectID, element, browseFlag, version);
+            String key = objectID + "|" + browseFlag + "|" + firstResult + "|" + maxResults + "|" + filter + "|" + Arrays.toString(orderby);
 
-            for (Item item : ((Container) didlObject).getItems()) {
-                didl.addItem(item);
+            CachedResult cached = browseCache.get(key);
+            if (cached != null && Arrays.equals(cached.versions, versions)) {
+                return cached.result;
             }
 
-            String xml = new DIDLParser().generate(didl);
-            logger.debug(xml);
-            return new BrowseResult(xml,
-                    ((Container) didlObject).getChildCount(),
-                    ((Container) didlObject).getChildCount());
+            BrowseResult result = generate(objectID, didlObject, browseFlag, DIDLFilter.parse(filter),
+                    firstResult, maxResults, order, version);
+            browseCache.put(key, new CachedResult(versions, result));
+            return result;
 
         } catch (Exception ex) {
             throw new ContentDirectoryException(
@@ -95,13 +147,128 @@ public class ContentDirectoryService extends AbstractContentDirectoryService {
         }
     }
 
+    private BrowseResult generate(String objectID, DIDLObject didlObject, BrowseFlag browseFlag, DIDLFilter filter,
+                                  long firstResult, long maxResults, SortOrder order, long version) {
+        DIDLWriter writer = didlWriter.get().begin(filter);
+        // every child and child count comes from one version of the tree.
+        ContentsSnapshot snapshot = contents.getSnapshot();
+
+        if (didlObject instanceof Item) {
+            return new BrowseResult(writer.item((Item) didlObject).end(), 1, 1, version);
+        }
+
+        if (browseFlag == BrowseFlag.METADATA) {
+            int childCount = snapshot.getChildren(objectID).size();
+            return new BrowseResult(writer.container((Container) didlObject, childCount).end(), 1, 1, version);
+        }
+
+        if (order != null) {
+            // the children are presorted, so that only the requested window is read.
+            List<ContentElement> children = contents.getSortedChildren(snapshot, objectID, order);
+            int total = children.size();
+            int from = (int) Math.min(firstResult, total);
+            int to = maxResults > 0 ? (int) Math.min(from + maxResults, total) : total;
+            for (ContentElement child : children.subList(from, to)) {
+                write(writer, snapshot, child);
+            }
+            logger.debug("browse objectID: {} order: {} window: {}-{}/{}", objectID, order, from, to, total);
+            return new BrowseResult(writer.end(), to - from, total, version);
+        }
+
+        // containers come first, then items. only the requested window is serialized.
+        ContentsSnapshot.Children children = snapshot.getChildren(objectID);
+        int total = children.size();
+        int from = (int) Math.min(firstResult, total);
+        int to = maxResults > 0 ? (int) Math.min(from + maxResults, total) : total;
+
+        for (int i = from; i < to; i++) {
+            write(writer, snapshot, children.get(i));
+        }
+
+        String xml = writer.end();
+        logger.debug("browse objectID: {} window: {}-{}/{}", objectID, from, to, total);
+        return new BrowseResult(xml, to - from, total, version);
+    }
+
+    // the children of a container include the child counts of its child containers,
+    // which change with the update ids of the child containers but not with that of the container.
+    private long[] versionsOf(String objectID, ContentElement element, BrowseFlag browseFlag, long version) {
+        if (!element.isContainer() || browseFlag == BrowseFlag.METADATA) {
+            return new long[]{version};
+        }
+        List<ContentElement> containers = contents.getSnapshot().getChildren(objectID).getContainers();
+        long[] versions = new long[containers.size() + 1];
+        versions[0] = version;
+        for (int i = 0; i < containers.size(); i++) {
+            versions[i + 1] = contents.getContainerUpdateId(containers.get(i).getId());
+        }
+        return versions;
+    }
+
+    private static class CachedResult {
+
+        private final long[] versions;
+        private final BrowseResult result;
+
+        private CachedResult(long[] versions, BrowseResult result) {
+            this.versions = versions;
+            this.result = result;
+        }
+    }
+
     @Override
     public BrowseResult search(String containerId,
                                String searchCriteria, String filter,
                                long firstResult, long maxResults,
                                SortCriterion[] orderby) throws ContentDirectoryException {
 
-        // You can override this method to implement searching!
-        return super.search(containerId, searchCriteria, filter, firstResult, maxResults, orderby);
+        logger.debug("search containerId: {} criteria: {}", containerId, searchCriteria);
+
+        SortOrder order = toSortOrder(orderby);
+
+        if (contents.getContentElement(containerId) == null) {
+            throw new ContentDirectoryException(ContentDirectoryErrorCode.NO_SUCH_CONTAINER, containerId);
+        }
+
+        List<ContentElement> matched;
+        try {
+            matched = contents.search(containerId, SearchCriteria.parse(searchCriteria));
+        } catch (IllegalArgumentException ex) {
+            logger.warn("unsupported search criteria [{}]. {}", searchCriteria, ex.getMessage());
+            throw new ContentDirectoryException(ContentDirectoryErrorCode.UNSUPPORTED_SEARCH_CRITERIA, ex.getMessage());
+        }
+
+        if (order != null) {
+            Collections.sort(matched, order);
+        }
+
+        int total = matched.size();
+        int from = (int) Math.min(firstResult, total);
+        int to = maxResults > 0 ? (int) Math.min(from + maxResults, total) : total;
+
+        DIDLWriter writer = didlWriter.get().begin(DIDLFilter.parse(filter));
+        ContentsSnapshot snapshot = contents.getSnapshot();
+        for (ContentElement element : matched.subList(from, to)) {
+            write(writer, snapshot, element);
+        }
+        return new BrowseResult(writer.end(), to - from, total, contents.getContainerUpdateId(containerId));
+    }
+
+    private static void write(DIDLWriter writer, ContentsSnapshot snapshot, ContentElement element) {
+        DIDLObject didlObject = element.getDIDLObject();
+        if (didlObject instanceof Item) {
+            writer.item((Item) didlObject);
+        } else {
+            writer.container((Container) didlObject, snapshot.getChildren(element.getId()).size());
+        }
+    }
+
+    private static SortOrder toSortOrder(SortCriterion[] orderby) throws ContentDirectoryException {
+        try {
+            return SortOrder.of(orderby);
+        } catch (IllegalArgumentException ex) {
+            logger.warn("unsupported sort criteria {}. {}", Arrays.toString(orderby), ex.getMessage());
+            throw new ContentDirectoryException(ContentDirectoryErrorCode.UNSUPPORTED_SORT_CRITERIA, ex.getMessage());
+        }
     }
 }
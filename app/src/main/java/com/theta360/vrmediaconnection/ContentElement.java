@@ -24,89 +24,138 @@ import com.theta360.vrmediaconnection.network.HttpConnector;
 
 import org.fourthline.cling.support.model.DIDLObject;
 
+/**
+ * View of a row of the CatalogStore. The attributes are kept in the columns of the store,
+ * so that an element itself has only the store and its row.
+ * The DIDL object of an item is built on demand, so that the catalog is read through the getters of this class
+ * unless the object itself is written.
+ */
 public class ContentElement {
 
-    private String id;
-    private DIDLObject didlObject;
-    private String title;
-    private String localUri;
-    private String virtualUri;
-    private String localPath;
-    private String mimeType;
-    private long width;
-    private long height;
-
-    private HttpConnector connector;
-
-
-    public ContentElement(String id, DIDLObject didlObject) {
-        this.id = id;
-        this.didlObject = didlObject;
-        this.title = "";
-        this.localUri = "";
-        this.virtualUri = "";
-        this.localPath = "";
-        this.mimeType = "";
-
-        this.connector = new HttpConnector(Constants.Net.LOCAL_URI);
+    // the thumbnails are requested by the file URL, so that a connector is shared by all the elements.
+    private static final HttpConnector connector = new HttpConnector(Constants.Net.LOCAL_URI);
+
+    private final CatalogStore store;
+    private final int row;
+
+    ContentElement(CatalogStore store, int row) {
+        this.store = store;
+        this.row = row;
     }
 
     @Override
     public String toString() {
-        return "id=" + id +
-                ", title=" + title +
-                ", localUri=" + localUri +
-                ", virtualUri=" + virtualUri +
-                ", localPath=" + localPath +
-                ", mimeType=" + mimeType +
-                ", width=" + width +
-                ", height=" + height;
+        return "id=" + getId() +
+                ", title=" + getTitle() +
+                ", localUri=" + getLocalUri() +
+                ", virtualUri=" + getVirtualUri() +
+                ", localPath=" + getLocalPath() +
+                ", mimeType=" + getMimeType() +
+                ", length=" + getLength() +
+                ", lastModified=" + getLastModified() +
+                ", date=" + getDate() +
+                ", width=" + getWidth() +
+                ", height=" + getHeight();
     }
 
-    public String getId() { return this.id; }
+    int getRow() { return this.row; }
+
+    public String getId() { return store.getId(row); }
+
+    public DIDLObject getDIDLObject() { return store.getDIDLObject(row); }
 
-    public DIDLObject getDIDLObject() { return this.didlObject; }
+    public String getParentId() { return store.getParentId(row); }
 
-    public String getTitle() { return this.title; }
+    // upnp:class such as "object.item.videoItem"
+    public String getClazz() { return store.getClazz(row); }
 
-    public String getLocalUri() { return this.localUri; }
+    public boolean isContainer() { return getClazz().startsWith("object.container"); }
 
-    public String getVirtualUri() { return this.virtualUri; }
+    // dc:title of the DIDL object
+    public String getDisplayTitle() { return DIDLItemBuilder.titleOf(this); }
 
-    public String getLocalPath() { return this.localPath; }
+    public String getTitle() { return store.getTitle(row); }
 
-    public String getMimeType() { return this.mimeType; }
+    public String getLocalUri() { return store.getPath(row, CatalogStore.LOCAL_URI); }
 
-    public long getWidth() { return this.width; }
+    public String getVirtualUri() { return store.getPath(row, CatalogStore.VIRTUAL_URI); }
 
-    public long getHeight() { return this.height; }
+    public String getLocalPath() { return store.getPath(row, CatalogStore.LOCAL_PATH); }
 
+    public String getMimeType() { return store.getMimeType(row); }
 
-    public void setTitle(String title) { this.title = title; }
+    public HeaderProfile getHeaderProfile() { return store.getHeaderProfile(row); }
 
-    public void setLocalUri(String localUri) { this.localUri = localUri; }
+    public long getLength() { return store.getLength(row); }
 
-    public void setVirtualUri(String virtualUri) { this.virtualUri = virtualUri; }
+    public long getLastModified() { return store.getLastModified(row); }
 
-    public void setLocalPath(String localPath) { this.localPath = localPath; }
+    /**
+     * Validator of the current representation.
+     * It is derived from the modification time and the length of the file, or from the file URL of the camera
+     * when the modification time is unknown. It changes when a dummy content switches to done.
+     */
+    public String getETag() {
+        long lastModified = getLastModified();
+        String version = lastModified > 0 ? Long.toHexString(lastModified) : Integer.toHexString(getLocalUri().hashCode());
+        return "\"" + version + "-" + Long.toHexString(getLength()) + "\"";
+    }
+
+    // capture date in ISO 8601, or null if it is unknown
+    public String getDate() { return store.getDate(row); }
+
+    // capture date in epoch milliseconds, or Long.MIN_VALUE if it is unknown
+    public long getDateTime() { return store.getDateTime(row); }
 
-    public void setMimeType(String mimeType) { this.mimeType = mimeType; }
+    public long getWidth() { return store.getWidth(row); }
+
+    public long getHeight() { return store.getHeight(row); }
+
+    // resolution of the res, or null if it is unknown
+    public String getResolution() {
+        int width = store.getResolutionWidth(row);
+        int height = store.getResolutionHeight(row);
+        return width > 0 && height > 0 ? width + "x" + height : null;
+    }
 
-    public void setSize(long width, long height) {
-        this.width = width;
-        this.height = height;
+    // number of the pixels of the resolution of the res, or 0 if it is unknown
+    public long getResolutionArea() {
+        int width = store.getResolutionWidth(row);
+        int height = store.getResolutionHeight(row);
+        return width > 0 && height > 0 ? (long) width * height : 0;
     }
 
+
+    public void setTitle(String title) { store.setTitle(row, title); }
+
+    public void setLocalUri(String localUri) { store.setPath(row, CatalogStore.LOCAL_URI, localUri); }
+
+    public void setVirtualUri(String virtualUri) { store.setPath(row, CatalogStore.VIRTUAL_URI, virtualUri); }
+
+    public void setLocalPath(String localPath) { store.setPath(row, CatalogStore.LOCAL_PATH, localPath); }
+
+    public void setMimeType(String mimeType) { store.setMimeType(row, mimeType); }
+
+    public void setLength(long length) { store.setLength(row, length); }
+
+    public void setLastModified(long lastModified) { store.setLastModified(row, lastModified); }
+
+    public void setDate(String date) { store.setDate(row, date); }
+
+    public void setSize(long width, long height) { store.setSize(row, (int) width, (int) height); }
+
+    public void setResolution(int width, int height) { store.setResolution(row, width, height); }
+
     public Bitmap createThumbnail() {
         if (isCorrectedContent()) {
-            return ThumbnailUtils.createVideoThumbnail(localPath, MediaStore.Video.Thumbnails.MINI_KIND);
+            return ThumbnailUtils.createVideoThumbnail(getLocalPath(), MediaStore.Video.Thumbnails.MINI_KIND);
         } else {
-            return connector.getThumb(localUri);
+            return connector.getThumb(getLocalUri());
         }
     }
 
     private boolean isCorrectedContent() {
-        if (id.indexOf(Constants.Content.CORRECTED_VIDEO_ID_PREFIX) == 0) {
+        if (getId().indexOf(Constants.Content.CORRECTED_VIDEO_ID_PREFIX) == 0) {
             return true;
         }
         return false;
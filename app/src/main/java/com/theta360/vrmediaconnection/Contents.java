@@ -22,8 +22,15 @@ import org.fourthline.cling.support.model.container.Container;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Contents {
 
@@ -36,7 +43,12 @@ public class Contents {
     public static final String ORIGINAL_VIDEO_ID = "3-1";
     public static final String CORRECTED_VIDEO_ID = "3-2";
 
-    private final Map<String, ContentElement> contentMap = new ConcurrentHashMap<>();
+    private final CatalogStore store = new CatalogStore();
+    // written only under the lock of this object, read without any lock.
+    private volatile ContentsSnapshot snapshot = ContentsSnapshot.EMPTY;
+    private final Map<String, AtomicLong> containerUpdateIds = new ConcurrentHashMap<>();
+    private final SearchIndex searchIndex = new SearchIndex();
+    private final List<ContentsListener> listeners = new CopyOnWriteArrayList<>();
 
     public Contents() {
         Container root = new Container();
@@ -48,15 +60,11 @@ public class Contents {
         root.setRestricted(true);
         root.setSearchable(true);
         root.setWriteStatus(WriteStatus.NOT_WRITABLE);
-        root.setChildCount(0);
-        ContentElement element = new ContentElement(ROOT_ID, root);
-
-        contentMap.clear();
-        contentMap.putIfAbsent(ROOT_ID, element);
+        store.add(store.create(ROOT_ID, root));
     }
 
     public Container getRootContainer() {
-        ContentElement element = contentMap.get(ROOT_ID);
+        ContentElement element = store.get(ROOT_ID);
         if (element == null) {
             logger.error("failed to get root element.");
             throw new RuntimeException("failed to get root element.");
@@ -65,15 +73,192 @@ public class Contents {
     }
 
     public ContentElement getContentElement(String id) {
-        return contentMap.get(id);
+        return store.get(id);
+    }
+
+    /**
+     * Create an element in the store. It is not a part of the contents until it is added.
+     */
+    public ContentElement createContentElement(String id, DIDLObject didlObject) {
+        return store.create(id, didlObject);
     }
 
+    /**
+     * Create an item whose DIDL object is built from its attributes when it is read.
+     *
+     * @param clazz upnp:class of the item
+     */
+    public ContentElement createItemElement(String id, String parentId, String clazz) {
+        return store.createItem(id, parentId, clazz);
+    }
+
+    /**
+     * Current version of the tree. It never changes once it is returned.
+     */
+    public ContentsSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public List<ContentElement> getChildren(String containerId) {
+        ContentsSnapshot.Children children = snapshot.getChildren(containerId);
+        List<ContentElement> result = new ArrayList<>(children.size());
+        result.addAll(children.getContainers());
+        result.addAll(children.getItems());
+        return result;
+    }
+
+    /**
+     * Add the element to the children of the container of its parentID.
+     */
     public void addContentElement(String id, ContentElement contentElement) {
-        contentMap.putIfAbsent(id, contentElement);
+        synchronized (this) {
+            if (!store.add(contentElement)) {
+                return;
+            }
+            String parentId = contentElement.getParentId();
+            if (parentId != null) {
+                snapshot = snapshot.withChild(parentId, contentElement);
+            }
+        }
+        searchIndex.add(contentElement);
+        notifyParentUpdated(contentElement);
+    }
+
+    /**
+     * Add the elements in the order of the list. One version of the tree is published for all of them.
+     */
+    public void addContentElements(List<ContentElement> elements) {
+        List<ContentElement> added = new ArrayList<>(elements.size());
+        synchronized (this) {
+            for (ContentElement element : elements) {
+                if (store.add(element)) {
+                    added.add(element);
+                }
+            }
+            snapshot = snapshot.withChildren(added);
+        }
+        Set<String> parentIds = new LinkedHashSet<>();
+        for (ContentElement element : added) {
+            searchIndex.add(element);
+            if (element.getParentId() != null) {
+                parentIds.add(element.getParentId());
+            }
+        }
+        for (String parentId : parentIds) {
+            notifyContainerUpdated(parentId);
+        }
     }
 
     public void removeContentElement(String id) {
-        contentMap.remove(id);
+        ContentElement element;
+        synchronized (this) {
+            element = store.remove(id);
+            if (element == null) {
+                return;
+            }
+            snapshot = snapshot.withoutChild(element.getParentId(), element);
+        }
+        searchIndex.remove(id);
+        notifyParentUpdated(element);
+    }
+
+    /**
+     * Children of the container in the snapshot, containers and items together, in the order.
+     * The view is sorted once, and is kept in the later snapshots which update it as children are added and removed.
+     *
+     * @return unmodifiable list of the children
+     */
+    public List<ContentElement> getSortedChildren(ContentsSnapshot snapshot, String containerId, SortOrder order) {
+        ContentsSnapshot.Children children = snapshot.getChildren(containerId);
+        List<ContentElement> sorted = children.getSorted(order);
+        if (sorted != null) {
+            return sorted;
+        }
+        if (children.size() == 0) {
+            return Collections.emptyList();
+        }
+        ContentsSnapshot.Children withView = children.withSorted(order);
+        synchronized (this) {
+            // kept only while the children are unchanged, so that the view is of the children of the snapshot.
+            if (this.snapshot.getChildren(containerId) == children) {
+                this.snapshot = this.snapshot.withSortedView(containerId, withView);
+            }
+        }
+        logger.debug("sorted children of [{}] by {}: {}", containerId, order, children.size());
+        return withView.getSorted(order);
     }
 
+    /**
+     * Search the descendants of the container.
+     *
+     * @param containerId id of the container to search in
+     * @param criteria parsed SearchCriteria
+     * @return matching elements, in the order in which they were added
+     * @throws IllegalArgumentException if the criteria uses an unsupported property or operator
+     */
+    public List<ContentElement> search(String containerId, SearchCriteria criteria) {
+        List<ContentElement> matched = searchIndex.search(criteria);
+        if (containerId.equals(ROOT_ID)) {
+            return matched; // the root itself is not indexed
+        }
+
+        List<ContentElement> result = new ArrayList<>();
+        for (ContentElement element : matched) {
+            if (isDescendant(element, containerId)) {
+                result.add(element);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Update counter of the container. It changes whenever a child of the container is added, removed or modified.
+     */
+    public long getContainerUpdateId(String containerId) {
+        AtomicLong updateId = containerUpdateIds.get(containerId);
+        return updateId == null ? 0 : updateId.get();
+    }
+
+    /**
+     * Must be called after the children of the container are changed in place.
+     */
+    public void notifyContainerUpdated(String containerId) {
+        AtomicLong updateId = containerUpdateIds.get(containerId);
+        if (updateId == null) {
+            AtomicLong created = new AtomicLong();
+            updateId = containerUpdateIds.putIfAbsent(containerId, created);
+            if (updateId == null) updateId = created;
+        }
+        long containerUpdateId = updateId.incrementAndGet();
+
+        for (ContentsListener listener : listeners) {
+            listener.onContainerUpdated(containerId, containerUpdateId);
+        }
+    }
+
+    public void addListener(ContentsListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ContentsListener listener) {
+        listeners.remove(listener);
+    }
+
+    private boolean isDescendant(ContentElement element, String containerId) {
+        String parentId = element.getParentId();
+        while (parentId != null) {
+            if (parentId.equals(containerId)) return true;
+            ContentElement parent = store.get(parentId);
+            if (parent == null) return false;
+            parentId = parent.getParentId();
+        }
+        return false;
+    }
+
+    private void notifyParentUpdated(ContentElement element) {
+        String parentId = element.getParentId();
+        if (parentId != null) {
+            notifyContainerUpdated(parentId);
+        }
+    }
 }
@@ -18,146 +18,287 @@ package com.theta360.vrmediaconnection;
 
 import android.content.Context;
 import android.os.AsyncTask;
+import android.os.SystemClock;
 import android.provider.MediaStore;
 
 import com.theta360.vrmediaconnection.network.HttpConnector;
+import com.theta360.vrmediaconnection.network.HttpListListener;
 import com.theta360.vrmediaconnection.network.ImageInfo;
 
 import org.fourthline.cling.support.model.DIDLObject;
-import org.fourthline.cling.support.model.Res;
 import org.fourthline.cling.support.model.WriteStatus;
 import org.fourthline.cling.support.model.container.Container;
-import org.fourthline.cling.support.model.dlna.DLNAProtocolInfo;
-import org.fourthline.cling.support.model.item.ImageItem;
-import org.fourthline.cling.support.model.item.Item;
-import org.fourthline.cling.support.model.item.VideoItem;
-import org.seamless.util.MimeType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.IOException;
-import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class ContentsCreator extends AsyncTask<Void, Void, Void> implements ModeListener {
 
     private static final Logger logger = LoggerFactory.getLogger(ContentsCreator.class);
+    private static final Pattern CAPTURE_DATE = Pattern.compile("(\\d{4}):(\\d{2}):(\\d{2}) (.+)");
+    private static final Pattern BASE_NAME = Pattern.compile("/\\d{3}RICOH.*");
+    // files of a task which are created without being split any more
+    private static final int CREATE_TASK_SIZE = 64;
 
     private Context context;
     private String ipAddress;
     private Contents contents;
-    private List<ImageInfo> imageInfoList;
+    private DummyAssets dummyAssets;
+    // files of the camera reflected in the contents, by their file ids
+    private Map<String, ImageInfo> listedFiles = new LinkedHashMap<>();
+    // state of the camera when the files were listed, null until the first listing is done
+    private volatile String listedFingerprint;
+    private long listedStamp;
+    private File snapshotFile;
+    // sources of the listing in the order of preference
+    private List<CatalogSource> catalogSources;
     private boolean isCorrectionMode;
+    // true once the containers are created, so that a mode change before it only switches the mode
+    private boolean hasContainers;
+    // mode changes and snapshot saves, which should not block the caller
+    private ExecutorService executorService;
 
-    public ContentsCreator(Context context, String ipAddress, Contents contents, boolean isCorrectionMode) {
+    public ContentsCreator(Context context, String ipAddress, Contents contents, DummyAssets dummyAssets, boolean isCorrectionMode) {
         this.context = context;
         this.ipAddress = ipAddress;
         this.contents = contents;
+        this.dummyAssets = dummyAssets;
         this.isCorrectionMode = isCorrectionMode;
+        this.snapshotFile = new File(context.getFilesDir(), Constants.Cache.CATALOG_FILE_NAME);
+        HttpConnector connector = new HttpConnector(Constants.Net.LOCAL_URI);
+        this.catalogSources = Arrays.<CatalogSource>asList(new DcimCatalogSource(connector), new OscCatalogSource(connector));
+        this.executorService = Executors.newSingleThreadExecutor();
     }
 
     @Override
     protected Void doInBackground(Void... params) {
 
+        // the lock is held only while the contents are changed, never during the listing.
+        synchronized (this) {
+            Container root = contents.getRootContainer();
+            createContainer(Contents.VIDEO_ID, root, Constants.Content.DISPLAY_VIDEO_DIR_NAME);
+            createContainer(Contents.IMAGE_ID, root, Constants.Content.DISPLAY_IMAGE_DIR_NAME);
+
+            if (isCorrectionMode) {
+                Container correctedContainer = createContainer(Contents.CORRECTION_ID, root, Constants.Content.DISPLAY_CORRECTION_DIR_NAME);
+                createContainer(Contents.ORIGINAL_VIDEO_ID, correctedContainer, Constants.Content.DISPLAY_ORIGINAL_VIDEO_DIR_NAME);
+                createContainer(Contents.CORRECTED_VIDEO_ID, correctedContainer, Constants.Content.DISPLAY_CORRECTED_VIDEO_DIR_NAME);
+            }
+            this.hasContainers = true;
+        }
+
         HttpConnector connector = new HttpConnector(Constants.Net.LOCAL_URI);
-        this.imageInfoList = connector.getList();
 
-        Container root = contents.getRootContainer();
-        Container videoContainer = createContainer(Contents.VIDEO_ID, root, Constants.Content.DISPLAY_VIDEO_DIR_NAME);
-        Container imageContainer = createContainer(Contents.IMAGE_ID, root, Constants.Content.DISPLAY_IMAGE_DIR_NAME);
-        Container originalVideoContainer = null;
-
-        if (isCorrectionMode) {
-            Container correctedContainer = createContainer(Contents.CORRECTION_ID, root, Constants.Content.DISPLAY_CORRECTION_DIR_NAME);
-            originalVideoContainer = createContainer(Contents.ORIGINAL_VIDEO_ID, correctedContainer, Constants.Content.DISPLAY_ORIGINAL_VIDEO_DIR_NAME);
-            createContainer(Contents.CORRECTED_VIDEO_ID, correctedContainer, Constants.Content.DISPLAY_CORRECTED_VIDEO_DIR_NAME);
+        // the snapshot is served at once, and it is validated against the camera afterwards.
+        CatalogSnapshot snapshot = CatalogSnapshot.read(this.snapshotFile);
+        if (snapshot != null) {
+            synchronized (this) {
+                createContents(snapshot.getFiles());
+                for (ImageInfo info : snapshot.getFiles()) {
+                    this.listedFiles.put(info.getFileId(), info);
+                }
+            }
+            logger.info("restored {} files.", snapshot.getFiles().size());
+
+            String fingerprint = connector.getStateFingerprint();
+            long stamp = CatalogSnapshot.dcimStamp();
+            boolean isValid = (fingerprint != null && fingerprint.equals(snapshot.getFingerprint()))
+                    || snapshot.getDcimStamp() == stamp;
+            synchronized (this) {
+                // a stale snapshot keeps being served until ContentsSync lists the camera again.
+                this.listedFingerprint = isValid && fingerprint != null ? fingerprint : "";
+                this.listedStamp = isValid ? stamp : snapshot.getDcimStamp();
+            }
+            logger.info("validated the snapshot. valid:{}", isValid);
+            return null;
         }
 
-        for (ImageInfo info : imageInfoList) {
-            if (ImageInfo.FILE_FORMAT_CODE_EXIF_MPEG.equals(info.getFileFormat())) {
-                createVideoContents(info, videoContainer);
-                if (isCorrectionMode) {
-                    createCorrectedFolder(info, originalVideoContainer);
+        // the fingerprint is taken before the listing, so that a change during the listing is synchronized later.
+        String fingerprint = connector.getStateFingerprint();
+        long stamp = CatalogSnapshot.dcimStamp();
+
+        // the contents are created page by page while the next page is listed.
+        int count = listFiles(new HttpListListener() {
+            @Override
+            public void onListed(List<ImageInfo> imageInfoPage) {
+                synchronized (ContentsCreator.this) {
+                    createContents(imageInfoPage);
+                    for (ImageInfo info : imageInfoPage) {
+                        listedFiles.put(info.getFileId(), info);
+                    }
                 }
-            } else {
-                createImageContents(info, imageContainer);
             }
+        });
+        synchronized (this) {
+            // an empty fingerprint never matches, so that the contents are synchronized at the first check.
+            this.listedFingerprint = fingerprint != null && count >= 0 ? fingerprint : "";
+            this.listedStamp = stamp;
         }
+        logger.info("listed {} files.", count);
+        saveSnapshot();
 
         return null;
     }
 
-    @Override
-    public void updateStatus(boolean isCorrectionMode) {
-        if (isCorrectionMode) {
-            recreateCorrectionFolder();
-        } else {
-            removeCorrectionContainer();
-            recursiveDeleteFile(new File(Constants.Storage.CORRECTED_DIR));
+    /**
+     * @return state fingerprint of the camera of the last listing (null until the contents are created)
+     */
+    public String getListedFingerprint() { return this.listedFingerprint; }
+
+    /**
+     * Take the fingerprint as the listed one, when the state has changed but the files have not.
+     */
+    public synchronized void acceptFingerprint(String fingerprint) {
+        if (this.listedFingerprint != null) {
+            this.listedFingerprint = fingerprint;
         }
     }
 
-    public void createCorrectedVideoContents(ContentElement originalElem) {
+    /**
+     * List the files of the camera again and apply only the added and the removed files to the contents.
+     *
+     * @return true if the contents are synchronized, false if the listing failed
+     */
+    public boolean sync() {
+        if (this.listedFingerprint == null) {
+            return false;
+        }
 
-        ContentElement parentElement = contents.getContentElement(Contents.CORRECTED_VIDEO_ID);
-        if (parentElement == null) {
-            logger.error("contents is not contain [{}]", Contents.CORRECTED_VIDEO_ID);
-            throw new RuntimeException("contents is not contain [" + Contents.CORRECTED_VIDEO_ID + "]");
+        HttpConnector connector = new HttpConnector(Constants.Net.LOCAL_URI);
+        String fingerprint = connector.getStateFingerprint();
+        long stamp = CatalogSnapshot.dcimStamp();
+        final Map<String, ImageInfo> current = new LinkedHashMap<>();
+        int count = listFiles(new HttpListListener() {
+            @Override
+            public void onListed(List<ImageInfo> imageInfoPage) {
+                for (ImageInfo info : imageInfoPage) {
+                    current.put(info.getFileId(), info);
+                }
+            }
+        });
+        if (fingerprint == null || count < 0) {
+            logger.warn("failed to list files for sync.");
+            return false;
         }
-        Container parent = (Container) parentElement.getDIDLObject();
 
-        String title = originalElem.getTitle();
-        // The postfix "_360" should be added to the title.
-        // By this postfix, Oculus Go can recognize it as the spherical video.
-        String playerTitle = title + "_360";
-        String localUri = originalElem.getLocalUri();
+        List<ImageInfo> added = new ArrayList<>();
+        int removed = 0;
+        synchronized (this) {
+            for (ImageInfo info : this.listedFiles.values()) {
+                if (!current.containsKey(info.getFileId())) {
+                    removeContents(info);
+                    removed++;
+                }
+            }
+            for (ImageInfo info : current.values()) {
+                if (!this.listedFiles.containsKey(info.getFileId())) {
+                    added.add(info);
+                }
+            }
+            createContents(added);
+            this.listedFiles = current;
+            this.listedFingerprint = fingerprint;
+            this.listedStamp = stamp;
+        }
+        logger.info("synchronized contents. added:{} removed:{}", added.size(), removed);
+        saveSnapshot();
 
-        String originalId = originalElem.getId().substring(Constants.Content.ORIGINAL_VIDEO_ID_PREFIX.length());
-        String id = Constants.Content.CORRECTED_VIDEO_ID_PREFIX + originalId;
+        return true;
+    }
 
-        String virtualUri = createVirtualUri(id);
-        String thumbnailUri = createThumbnailUri(virtualUri);
-        String localPath = getCorrectedFilePath(originalId);
+    /**
+     * Save the listed files in the background, so that the contents are restored without the listing at the next startup.
+     * The saves are written one by one, each with the files listed when it runs.
+     */
+    public void saveSnapshot() {
+        executorService.submit(new Runnable() {
+            @Override
+            public void run() {
+                CatalogSnapshot snapshot;
+                synchronized (ContentsCreator.this) {
+                    if (listedFingerprint == null) {
+                        return;
+                    }
+                    snapshot = new CatalogSnapshot(listedFingerprint, listedStamp, listedFiles.values());
+                }
+                if (snapshot.write(snapshotFile)) {
+                    logger.debug("saved {} files.", snapshot.getFiles().size());
+                }
+            }
+        });
+    }
 
-        File file = new File(localPath);
-        long size = file.length();
+    /**
+     * Stop after the pending mode changes and snapshot saves are done.
+     */
+    public void shutdown() {
+        executorService.shutdown();
+        logger.info("ContentsCreator is shutdown.");
+    }
 
-        Res res = new Res(new MimeType(
-                Constants.MimeType.MP4.substring(0, Constants.MimeType.MP4.indexOf('/')),
-                Constants.MimeType.MP4.substring(Constants.MimeType.MP4.indexOf('/') + 1)),
-                size,
-                virtualUri);
-        res.setResolution((int) originalElem.getWidth(), (int) originalElem.getHeight());
-        res.setProtocolInfo(new DLNAProtocolInfo(Constants.ProtocolInfo.MP4));
-
-        VideoItem videoItem = new VideoItem(id, parent.getId(), playerTitle, Constants.Content.CREATOR, res);
-        videoItem.addProperty(new DIDLObject.Property.UPNP.ALBUM_ART_URI(URI.create(thumbnailUri)));
-        videoItem.setRestricted(true);
-        parent.addItem(videoItem);
-        parent.setChildCount(parent.getChildCount() + 1);
-
-        ContentElement element = new ContentElement(id, videoItem);
-        element.setTitle(title);
-        element.setLocalUri(localUri);
-        element.setVirtualUri(virtualUri);
-        element.setLocalPath(localPath);
-        element.setMimeType(Constants.MimeType.MP4);
-        element.setSize(originalElem.getWidth(), originalElem.getHeight());
+    // the files are listed by the first source which succeeds.
+    private int listFiles(HttpListListener listener) {
+        Map<String, ImageInfo> listed;
+        synchronized (this) {
+            listed = new HashMap<>(this.listedFiles);
+        }
+        for (CatalogSource source : this.catalogSources) {
+            long start = SystemClock.elapsedRealtime();
+            int count = source.list(listed, listener);
+            logger.info("{} listed {} files in {} ms.", source.getClass().getSimpleName(), count, SystemClock.elapsedRealtime() - start);
+            if (count >= 0) {
+                return count;
+            }
+        }
+        return -1;
+    }
 
-        contents.addContentElement(id, element);
+    // called on the main thread, so that the contents are changed in the background.
+    @Override
+    public void updateStatus(final boolean isCorrectionMode) {
+        executorService.submit(new Runnable() {
+            @Override
+            public void run() {
+                applyStatus(isCorrectionMode);
+            }
+        });
+    }
 
-        // update the size of dummy file.
-        final long length;
-        try {
-            length = context.getResources().getAssets().openFd(Constants.Content.DUMMY_FILE_DONE).getLength();
-        } catch (IOException e) {
-            logger.error("failed to read file length of {}.", Constants.Content.DUMMY_FILE_DONE);
-            throw new RuntimeException("failed to read file length of " + Constants.Content.DUMMY_FILE_DONE, e);
+    private void applyStatus(boolean isCorrectionMode) {
+        synchronized (this) {
+            this.isCorrectionMode = isCorrectionMode;
+            if (!this.hasContainers) {
+                return;
+            }
+            if (isCorrectionMode) {
+                recreateCorrectionFolder();
+            } else {
+                removeCorrectionContainer();
+            }
+        }
+        if (!isCorrectionMode) {
+            recursiveDeleteFile(new File(Constants.Storage.CORRECTED_DIR));
         }
-        originalElem.getDIDLObject().getFirstResource().setSize(length);
+    }
+
+    public void createCorrectedVideoContents(ContentElement originalElem) {
+        ContentElement element = createCorrectedElement(originalElem);
+        contents.addContentElement(element.getId(), element);
+        contents.notifyContainerUpdated(Contents.ORIGINAL_VIDEO_ID);
 
         logger.debug("createContent: {}", element);
     }
@@ -170,62 +311,94 @@ public class ContentsCreator extends AsyncTask<Void, Void, Void> implements Mode
         container.setTitle(title);
         container.setRestricted(true);
         container.setWriteStatus(WriteStatus.NOT_WRITABLE);
-        container.setChildCount(0);
 
-        parent.addContainer(container);
-        parent.setChildCount(parent.getChildCount() + 1);
-        contents.addContentElement(id, new ContentElement(id, container));
+        contents.addContentElement(id, contents.createContentElement(id, container));
 
         return container;
     }
 
-    private void createVideoContents(ImageInfo info, Container parent) {
+    /**
+     * Create the contents of the files. The elements are created in parallel,
+     * and added in the order of the files, so that the order of the children does not depend on the scheduling.
+     */
+    private void createContents(List<ImageInfo> infos) {
+        if (infos.isEmpty()) {
+            return;
+        }
+        List<List<ContentElement>> created = new ArrayList<>(Collections.<List<ContentElement>>nCopies(infos.size(), null));
+        ForkJoinPool.commonPool().invoke(new CreateTask(infos, created, 0, infos.size()));
+
+        List<ContentElement> elements = new ArrayList<>(infos.size());
+        for (List<ContentElement> fileElements : created) {
+            elements.addAll(fileElements);
+        }
+        contents.addContentElements(elements);
+        logger.debug("created {} contents of {} files.", elements.size(), infos.size());
+    }
+
+    // elements of the file, which are not added yet
+    private List<ContentElement> createElements(ImageInfo info) {
+        List<ContentElement> elements = new ArrayList<>(2);
+        if (ImageInfo.FILE_FORMAT_CODE_EXIF_MPEG.equals(info.getFileFormat())) {
+            ContentElement video = createVideoElement(info, Contents.VIDEO_ID);
+            if (video != null) {
+                elements.add(video);
+            }
+            if (isCorrectionMode && contents.getContentElement(Contents.ORIGINAL_VIDEO_ID) != null) {
+                ContentElement original = createOriginalElement(info, Contents.ORIGINAL_VIDEO_ID);
+                elements.add(original);
+                if (existsCorrectedData(original.getId().substring(Constants.Content.ORIGINAL_VIDEO_ID_PREFIX.length()))) {
+                    elements.add(createCorrectedElement(original));
+                }
+            }
+        } else {
+            ContentElement image = createImageElement(info, Contents.IMAGE_ID);
+            if (image != null) {
+                elements.add(image);
+            }
+        }
+        return elements;
+    }
+
+    // removing an id which has no element is ignored, so that every element of the file is simply removed.
+    private void removeContents(ImageInfo info) {
+        String id = createId(info.getFileId());
+        contents.removeContentElement(id);
+        contents.removeContentElement(id + ".JPG");
+        contents.removeContentElement(Constants.Content.ORIGINAL_VIDEO_ID_PREFIX + id);
+        contents.removeContentElement(Constants.Content.CORRECTED_VIDEO_ID_PREFIX + id);
+        logger.debug("removeContent: {}", id);
+    }
+
+    private ContentElement createVideoElement(ImageInfo info, String parentId) {
 
         if (ImageInfo.PROJECTION_TYPE_DUALFISH.equals(info.getProjectionType())) {
-            return;
+            return null;
         }
         String title = info.getFileName().substring(0, info.getFileName().lastIndexOf('.'));
-        // The postfix "_360" should be added to the title.
-        // By this postfix, Oculus Go can recognize it as the spherical video.
-        String playerTitle = title + "_360";
         String localUri = info.getFileId();
         String id = createId(localUri);
-        String virtualUri = createVirtualUri(id);
-        String thumbnailUri = createThumbnailUri(virtualUri);
-        long size = info.getFileSize();
-
-        Res res = new Res(new MimeType(
-                Constants.MimeType.MP4.substring(0, Constants.MimeType.MP4.indexOf('/')),
-                Constants.MimeType.MP4.substring(Constants.MimeType.MP4.indexOf('/') + 1)),
-                size,
-                virtualUri);
-        res.setResolution(info.getWidth(), info.getHeight());
-        res.setProtocolInfo(new DLNAProtocolInfo(Constants.ProtocolInfo.MP4));
-
-        VideoItem videoItem = new VideoItem(id, parent.getId(), playerTitle, Constants.Content.CREATOR, res);
-        videoItem.addProperty(new DIDLObject.Property.UPNP.ALBUM_ART_URI(URI.create(thumbnailUri)));
-        videoItem.setRestricted(true);
-        parent.addItem(videoItem);
-        parent.setChildCount(parent.getChildCount() + 1);
-
-        ContentElement element = new ContentElement(id, videoItem);
+
+        ContentElement element = contents.createItemElement(id, parentId, DIDLItemBuilder.VIDEO_CLASS);
         element.setTitle(title);
         element.setLocalUri(localUri);
-        element.setVirtualUri(virtualUri);
+        element.setVirtualUri(createVirtualUri(id));
         element.setLocalPath(getLocalPath(localUri));
         element.setMimeType(Constants.MimeType.MP4);
+        element.setLength(info.getFileSize());
+        element.setLastModified(new File(element.getLocalPath()).lastModified());
+        element.setDate(toDate(info.getCaptureDate()));
         element.setSize(info.getWidth(), info.getHeight());
-        contents.addContentElement(id, element);
-
-        logger.debug("createContent: {}", element);
+        element.setResolution(info.getWidth(), info.getHeight());
+        return element;
     }
 
-    private void createImageContents(ImageInfo info, Container parent) {
+    private ContentElement createImageElement(ImageInfo info, String parentId) {
 
         String fileName = info.getFileName();
         String ext = fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase();
         if (!ext.equals("jpg")) {
-            return;
+            return null;
         }
         String title = fileName.substring(0, fileName.lastIndexOf('.'));
         String localUri = info.getFileId();
@@ -233,98 +406,89 @@ public class ContentsCreator extends AsyncTask<Void, Void, Void> implements Mode
         // The extension should be added to the title of image contents.
         // With Oculus Go, unless the extension is added, the download images from THETA cannot be viewed.
         String id = createId(localUri) + ".JPG";
-        String virtualUri = createVirtualUri(id);
-        String thumbnailUri = createThumbnailUri(virtualUri);
-        long size = info.getFileSize();
-
-        Res res = new Res(new MimeType(
-                Constants.MimeType.JPEG.substring(0, Constants.MimeType.JPEG.indexOf('/')),
-                Constants.MimeType.JPEG.substring(Constants.MimeType.JPEG.indexOf('/') + 1)),
-                size,
-                virtualUri);
-        res.setResolution(info.getWidth(), info.getHeight());
-        res.setProtocolInfo(new DLNAProtocolInfo(Constants.ProtocolInfo.JPEG));
-
-        ImageItem imageItem = new ImageItem(id, parent.getId(), title, Constants.Content.CREATOR, res);
-        imageItem.addProperty(new DIDLObject.Property.UPNP.ALBUM_ART_URI(URI.create(thumbnailUri)));
-        imageItem.setRestricted(true);
-        parent.addItem(imageItem);
-        parent.setChildCount(parent.getChildCount() + 1);
-
-        ContentElement element = new ContentElement(id, imageItem);
+
+        ContentElement element = contents.createItemElement(id, parentId, DIDLItemBuilder.IMAGE_CLASS);
         element.setTitle(title);
         element.setLocalUri(localUri);
-        element.setVirtualUri(virtualUri);
+        element.setVirtualUri(createVirtualUri(id));
         element.setLocalPath(getLocalPath(localUri));
         element.setMimeType(Constants.MimeType.JPEG);
+        element.setLength(info.getFileSize());
+        element.setLastModified(new File(element.getLocalPath()).lastModified());
+        element.setDate(toDate(info.getCaptureDate()));
         element.setSize(info.getWidth(), info.getHeight());
-        contents.addContentElement(id, element);
-
-        logger.debug("createContent: {}", element);
+        element.setResolution(info.getWidth(), info.getHeight());
+        return element;
     }
 
-    private void createCorrectedFolder(ImageInfo info, Container parent) {
+    private ContentElement createOriginalElement(ImageInfo info, String parentId) {
 
         String title = info.getFileName().substring(0, info.getFileName().lastIndexOf('.'));
-        String playerTitle = title + "_360";
         String localUri = info.getFileId();
-        String preCorrectedId = createId(localUri);
-        String id = Constants.Content.ORIGINAL_VIDEO_ID_PREFIX + preCorrectedId;
-        String virtualUri = createVirtualUri(id);
-        String thumbnailUri = createThumbnailUri(virtualUri);
-        String localPath = getLocalPath(localUri);
-
-        final long length;
-        try {
-            length = context.getResources().getAssets().openFd(Constants.Content.DUMMY_FILE_PROCESSING).getLength();
-        } catch (IOException e) {
-            logger.error("failed to read file length of {}.", Constants.Content.DUMMY_FILE_PROCESSING);
-            throw new RuntimeException("failed to read file length of " + Constants.Content.DUMMY_FILE_PROCESSING, e);
-        }
+        String id = Constants.Content.ORIGINAL_VIDEO_ID_PREFIX + createId(localUri);
 
-        // create dummy resource
-        Res res = new Res(new MimeType(
-                Constants.MimeType.MP4.substring(0, Constants.MimeType.MP4.indexOf('/')),
-                Constants.MimeType.MP4.substring(Constants.MimeType.MP4.indexOf('/') + 1)),
-                length,
-                virtualUri);
-        res.setResolution(1920, 960);
-        res.setProtocolInfo(new DLNAProtocolInfo(Constants.ProtocolInfo.MP4));
-
-        VideoItem item = new VideoItem(id, parent.getId(), playerTitle, Constants.Content.CREATOR, res);
-        item.addProperty(new DIDLObject.Property.UPNP.ALBUM_ART_URI(URI.create(thumbnailUri)));
-        item.setRestricted(true);
-        parent.addItem(item);
-        parent.setChildCount(parent.getChildCount() + 1);
-
-        ContentElement element = new ContentElement(id, item);
+        // the dummy resource is shown until the correction is done.
+        ContentElement element = contents.createItemElement(id, parentId, DIDLItemBuilder.VIDEO_CLASS);
         element.setTitle(title);
         element.setLocalUri(localUri);
-        element.setVirtualUri(virtualUri);
-        element.setLocalPath(localPath);
+        element.setVirtualUri(createVirtualUri(id));
+        element.setLocalPath(getLocalPath(localUri));
         element.setMimeType(Constants.MimeType.MP4);
+        element.setLength(dummyAssets.getProcessing().getLength());
+        element.setDate(toDate(info.getCaptureDate()));
         element.setSize(info.getWidth(), info.getHeight());
+        element.setResolution(1920, 960);
+        return element;
+    }
 
-        if (existsCorrectedData(preCorrectedId)) {
-            createCorrectedVideoContents(element);
-        }
+    // the original element is switched to the done dummy.
+    private ContentElement createCorrectedElement(ContentElement originalElem) {
 
-        contents.addContentElement(id, element);
+        String title = originalElem.getTitle();
+        String localUri = originalElem.getLocalUri();
 
-        logger.debug("createContent: {}", element);
+        String originalId = originalElem.getId().substring(Constants.Content.ORIGINAL_VIDEO_ID_PREFIX.length());
+        String id = Constants.Content.CORRECTED_VIDEO_ID_PREFIX + originalId;
+        String localPath = getCorrectedFilePath(originalId);
+
+        File file = new File(localPath);
+        long size = file.length();
+
+        ContentElement element = contents.createItemElement(id, Contents.CORRECTED_VIDEO_ID, DIDLItemBuilder.VIDEO_CLASS);
+        element.setTitle(title);
+        element.setLocalUri(localUri);
+        element.setVirtualUri(createVirtualUri(id));
+        element.setLocalPath(localPath);
+        element.setMimeType(Constants.MimeType.MP4);
+        element.setLength(size);
+        element.setLastModified(file.lastModified());
+        element.setDate(originalElem.getDate());
+        element.setSize(originalElem.getWidth(), originalElem.getHeight());
+        element.setResolution((int) originalElem.getWidth(), (int) originalElem.getHeight());
+
+        // update the size of dummy file.
+        originalElem.setLength(dummyAssets.getDone().getLength());
+        originalElem.setLastModified(file.lastModified());
+        return element;
     }
 
     private void recreateCorrectionFolder() {
         Container root = contents.getRootContainer();
         Container correctedContainer = createContainer(Contents.CORRECTION_ID, root, Constants.Content.DISPLAY_CORRECTION_DIR_NAME);
-        Container originalVideoContainer = createContainer(Contents.ORIGINAL_VIDEO_ID, correctedContainer, Constants.Content.DISPLAY_ORIGINAL_VIDEO_DIR_NAME);
+        createContainer(Contents.ORIGINAL_VIDEO_ID, correctedContainer, Constants.Content.DISPLAY_ORIGINAL_VIDEO_DIR_NAME);
         createContainer(Contents.CORRECTED_VIDEO_ID, correctedContainer, Constants.Content.DISPLAY_CORRECTED_VIDEO_DIR_NAME);
 
-        for (ImageInfo info : this.imageInfoList) {
+        List<ContentElement> elements = new ArrayList<>();
+        for (ImageInfo info : this.listedFiles.values()) {
             if (ImageInfo.FILE_FORMAT_CODE_EXIF_MPEG.equals(info.getFileFormat())) {
-                createCorrectedFolder(info, originalVideoContainer);
+                ContentElement original = createOriginalElement(info, Contents.ORIGINAL_VIDEO_ID);
+                elements.add(original);
+                if (existsCorrectedData(original.getId().substring(Constants.Content.ORIGINAL_VIDEO_ID_PREFIX.length()))) {
+                    elements.add(createCorrectedElement(original));
+                }
             }
         }
+        contents.addContentElements(elements);
         logger.info("recreated CorrectionFolder.");
     }
 
@@ -334,14 +498,6 @@ public class ContentsCreator extends AsyncTask<Void, Void, Void> implements Mode
         clearChildContent(Contents.CORRECTION_ID);
         contents.removeContentElement(Contents.CORRECTION_ID);
 
-        Container root = contents.getRootContainer();
-        List<Container> containers = root.getContainers();
-        for (Container container : containers) {
-            if (container.getTitle().equals(Constants.Content.DISPLAY_CORRECTION_DIR_NAME))
-                containers.remove(container);
-        }
-        root.setChildCount(2);
-
         logger.info("removed CorrectionContainer.");
     }
 
@@ -353,20 +509,9 @@ public class ContentsCreator extends AsyncTask<Void, Void, Void> implements Mode
             throw new RuntimeException("contents is not contain [" + containerId + "]");
         }
 
-        Container container = (Container) element.getDIDLObject();
-        List<Item> items = container.getItems();
-        for (Item item : items) {
-            contents.removeContentElement(item.getId());
+        for (ContentElement child : contents.getChildren(containerId)) {
+            contents.removeContentElement(child.getId());
         }
-        if (items != null) items.clear();
-
-        List<Container> childContainers = container.getContainers();
-        for (Container childContainer : childContainers) {
-            contents.removeContentElement(childContainer.getId());
-        }
-        if (childContainers != null) childContainers.clear();
-
-        container.setChildCount(0);
     }
 
     private void recursiveDeleteFile(File file) {
@@ -384,11 +529,19 @@ public class ContentsCreator extends AsyncTask<Void, Void, Void> implements Mode
     }
 
     private String baseName(String localUri) {
-        Matcher matcher = Pattern.compile("/\\d{3}RICOH.*").matcher(localUri);
+        Matcher matcher = BASE_NAME.matcher(localUri);
         if (!matcher.find()) return "";
         return matcher.group();
     }
 
+    // "2015:07:10 11:05:18+09:00" of the camera to "2015-07-10T11:05:18+09:00"
+    private String toDate(String captureDate) {
+        if (captureDate == null) return null;
+        Matcher matcher = CAPTURE_DATE.matcher(captureDate);
+        if (!matcher.matches()) return null;
+        return matcher.group(1) + "-" + matcher.group(2) + "-" + matcher.group(3) + "T" + matcher.group(4);
+    }
+
     private String createId(String localUri) {
         String baseName = baseName(localUri);
         if (baseName.isEmpty()) return localUri;
@@ -399,10 +552,6 @@ public class ContentsCreator extends AsyncTask<Void, Void, Void> implements Mode
         return "http://" + this.ipAddress + ":" + Constants.Net.PORT + id;
     }
 
-    private String createThumbnailUri(String virtualUri) {
-        return virtualUri + "?type=thumb";
-    }
-
     private String getLocalPath(String localUri) {
         String baseName = baseName(localUri);
         if (baseName.isEmpty()) return localUri;
@@ -426,4 +575,31 @@ public class ContentsCreator extends AsyncTask<Void, Void, Void> implements Mode
                 new String[]{file.getPath() + "%"}
         );
     }
+
+    private class CreateTask extends RecursiveAction {
+
+        private final List<ImageInfo> infos;
+        private final List<List<ContentElement>> created;
+        private final int from;
+        private final int to;
+
+        private CreateTask(List<ImageInfo> infos, List<List<ContentElement>> created, int from, int to) {
+            this.infos = infos;
+            this.created = created;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CREATE_TASK_SIZE) {
+                for (int i = from; i < to; i++) {
+                    created.set(i, createElements(infos.get(i)));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new CreateTask(infos, created, from, middle), new CreateTask(infos, created, middle, to));
+        }
+    }
 }
@@ -0,0 +1,241 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable version of the tree of the catalog.
+ * A change never modifies a snapshot; a new snapshot is published which shares the children of the unchanged containers,
+ * so that a reader sees a consistent tree without any lock.
+ * The sorted views of the children are a part of the snapshot, so that they are always of the same tree.
+ */
+public final class ContentsSnapshot {
+
+    static final ContentsSnapshot EMPTY = new ContentsSnapshot(0, Collections.<String, Children>emptyMap());
+
+    private final long version;
+    private final Map<String, Children> children;
+
+    private ContentsSnapshot(long version, Map<String, Children> children) {
+        this.version = version;
+        this.children = children;
+    }
+
+    public long getVersion() { return this.version; }
+
+    public Children getChildren(String containerId) {
+        Children result = children.get(containerId);
+        return result == null ? Children.EMPTY : result;
+    }
+
+    ContentsSnapshot withChild(String parentId, ContentElement child) {
+        Map<String, Children> next = new HashMap<>(children);
+        next.put(parentId, getChildren(parentId).with(child));
+        return new ContentsSnapshot(version + 1, Collections.unmodifiableMap(next));
+    }
+
+    // the children are appended in the order of the list.
+    ContentsSnapshot withChildren(List<ContentElement> elements) {
+        Map<String, List<ContentElement>> added = new LinkedHashMap<>();
+        for (ContentElement element : elements) {
+            List<ContentElement> siblings = added.get(element.getParentId());
+            if (siblings == null) {
+                siblings = new ArrayList<>();
+                added.put(element.getParentId(), siblings);
+            }
+            siblings.add(element);
+        }
+        Map<String, Children> next = new HashMap<>(children);
+        for (Map.Entry<String, List<ContentElement>> entry : added.entrySet()) {
+            next.put(entry.getKey(), getChildren(entry.getKey()).with(entry.getValue()));
+        }
+        return new ContentsSnapshot(version + 1, Collections.unmodifiableMap(next));
+    }
+
+    // the tree is the same, so that the version is kept.
+    ContentsSnapshot withSortedView(String containerId, Children children) {
+        Map<String, Children> next = new HashMap<>(this.children);
+        next.put(containerId, children);
+        return new ContentsSnapshot(version, Collections.unmodifiableMap(next));
+    }
+
+    ContentsSnapshot withoutChild(String parentId, ContentElement child) {
+        Map<String, Children> next = new HashMap<>(children);
+        next.remove(child.getId());
+        if (parentId != null && next.containsKey(parentId)) {
+            next.put(parentId, getChildren(parentId).without(child));
+        }
+        return new ContentsSnapshot(version + 1, Collections.unmodifiableMap(next));
+    }
+
+    /**
+     * Children of a container. The containers come first, then the items, each in the order in which they were added.
+     * The views of the children in the orders which have been requested are updated with the children.
+     */
+    public static final class Children {
+
+        static final Children EMPTY = new Children(Collections.<ContentElement>emptyList(),
+                Collections.<ContentElement>emptyList(), Collections.<String, SortedView>emptyMap());
+
+        private final List<ContentElement> containers;
+        private final List<ContentElement> items;
+        // by the key of the order
+        private final Map<String, SortedView> sortedViews;
+
+        private Children(List<ContentElement> containers, List<ContentElement> items, Map<String, SortedView> sortedViews) {
+            this.containers = containers;
+            this.items = items;
+            this.sortedViews = sortedViews;
+        }
+
+        public List<ContentElement> getContainers() { return this.containers; }
+
+        public List<ContentElement> getItems() { return this.items; }
+
+        public int size() {
+            return containers.size() + items.size();
+        }
+
+        public ContentElement get(int index) {
+            return index < containers.size() ? containers.get(index) : items.get(index - containers.size());
+        }
+
+        /**
+         * @return unmodifiable list of the children in the order, or null if the order has no view
+         */
+        public List<ContentElement> getSorted(SortOrder order) {
+            SortedView view = sortedViews.get(order.getKey());
+            return view != null ? view.children : null;
+        }
+
+        Children withSorted(SortOrder order) {
+            List<ContentElement> sorted = new ArrayList<>(size());
+            sorted.addAll(containers);
+            sorted.addAll(items);
+            Collections.sort(sorted, order);
+            Map<String, SortedView> next = new HashMap<>(sortedViews);
+            next.put(order.getKey(), new SortedView(order, Collections.unmodifiableList(sorted)));
+            return new Children(containers, items, Collections.unmodifiableMap(next));
+        }
+
+        private Children with(ContentElement child) {
+            List<ContentElement> added = Collections.singletonList(child);
+            if (child.isContainer()) {
+                return new Children(added(containers, child), items, sortedWith(added));
+            }
+            return new Children(containers, added(items, child), sortedWith(added));
+        }
+
+        private Children with(List<ContentElement> added) {
+            List<ContentElement> addedContainers = new ArrayList<>();
+            List<ContentElement> addedItems = new ArrayList<>(added.size());
+            for (ContentElement child : added) {
+                if (child.isContainer()) {
+                    addedContainers.add(child);
+                } else {
+                    addedItems.add(child);
+                }
+            }
+            return new Children(
+                    addedContainers.isEmpty() ? containers : added(containers, addedContainers),
+                    addedItems.isEmpty() ? items : added(items, addedItems),
+                    sortedWith(added));
+        }
+
+        private Children without(ContentElement child) {
+            if (child.isContainer()) {
+                return new Children(removed(containers, child), items, sortedWithout(child));
+            }
+            return new Children(containers, removed(items, child), sortedWithout(child));
+        }
+
+        // the new children are sorted and merged into each of the views, so that a view is copied once.
+        private Map<String, SortedView> sortedWith(List<ContentElement> added) {
+            if (sortedViews.isEmpty()) return sortedViews;
+            Map<String, SortedView> next = new HashMap<>();
+            for (SortedView view : sortedViews.values()) {
+                List<ContentElement> sorted = new ArrayList<>(added);
+                Collections.sort(sorted, view.order);
+                next.put(view.order.getKey(), new SortedView(view.order, merge(view.children, sorted, view.order)));
+            }
+            return Collections.unmodifiableMap(next);
+        }
+
+        private Map<String, SortedView> sortedWithout(ContentElement child) {
+            if (sortedViews.isEmpty()) return sortedViews;
+            Map<String, SortedView> next = new HashMap<>();
+            for (SortedView view : sortedViews.values()) {
+                next.put(view.order.getKey(), new SortedView(view.order, removed(view.children, child)));
+            }
+            return Collections.unmodifiableMap(next);
+        }
+
+        // both lists are in the order; an element which is already in the view is not added again.
+        private static List<ContentElement> merge(List<ContentElement> children, List<ContentElement> sorted, SortOrder order) {
+            List<ContentElement> merged = new ArrayList<>(children.size() + sorted.size());
+            int i = 0;
+            int j = 0;
+            while (i < children.size() && j < sorted.size()) {
+                int result = order.compare(children.get(i), sorted.get(j));
+                if (result < 0) {
+                    merged.add(children.get(i++));
+                } else if (result > 0) {
+                    merged.add(sorted.get(j++));
+                } else {
+                    merged.add(children.get(i++));
+                    j++;
+                }
+            }
+            merged.addAll(children.subList(i, children.size()));
+            merged.addAll(sorted.subList(j, sorted.size()));
+            return Collections.unmodifiableList(merged);
+        }
+
+        private static List<ContentElement> added(List<ContentElement> list, ContentElement element) {
+            return added(list, Collections.singletonList(element));
+        }
+
+        private static List<ContentElement> added(List<ContentElement> list, List<ContentElement> elements) {
+            List<ContentElement> result = new ArrayList<>(list.size() + elements.size());
+            result.addAll(list);
+            result.addAll(elements);
+            return Collections.unmodifiableList(result);
+        }
+
+        private static List<ContentElement> removed(List<ContentElement> list, ContentElement element) {
+            List<ContentElement> result = new ArrayList<>(list);
+            result.remove(element);
+            return Collections.unmodifiableList(result);
+        }
+    }
+
+    private static final class SortedView {
+        private final SortOrder order;
+        private final List<ContentElement> children;
+
+        private SortedView(SortOrder order, List<ContentElement> children) {
+            this.order = order;
+            this.children = children;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import com.theta360.vrmediaconnection.network.HttpConnector;
+import com.theta360.vrmediaconnection.network.UpdateInfo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps the contents up to date with the files of the camera.
+ * The state fingerprint of the camera is watched by checkForUpdates. When it changes, the files are listed again
+ * only if the latest file or the number of the files has changed, since most of the changes are of the battery or
+ * the capture status. The throttle timeout of the camera is kept, and the interval grows while nothing changes.
+ */
+public class ContentsSync {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContentsSync.class);
+
+    // seconds for which the camera holds a checkForUpdates request
+    private static final int WAIT_TIMEOUT = 30;
+    private static final long RETRY_INTERVAL_MS = 5000;
+    private static final long MIN_INTERVAL_MS = 1000;
+    private static final long MAX_IDLE_INTERVAL_MS = 30000;
+
+    private ContentsCreator contentsCreator;
+    private HttpConnector connector;
+    private ExecutorService executorService;
+
+    public ContentsSync(ContentsCreator contentsCreator) {
+        this.contentsCreator = contentsCreator;
+        this.connector = new HttpConnector(Constants.Net.LOCAL_URI);
+        this.executorService = Executors.newSingleThreadExecutor();
+    }
+
+    public synchronized void start() {
+        executorService.submit(new Runnable() {
+            @Override
+            public void run() {
+                watch();
+            }
+        });
+    }
+
+    public synchronized void shutdown() {
+        executorService.shutdownNow();
+        logger.info("ContentsSync is shutdown.");
+    }
+
+    private void watch() {
+        // signature of the files at the last synchronization, unknown until the first one
+        String syncedFileSet = null;
+        long idleInterval = MIN_INTERVAL_MS;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                // null until the contents are created
+                String fingerprint = contentsCreator.getListedFingerprint();
+                if (fingerprint == null) {
+                    Thread.sleep(RETRY_INTERVAL_MS);
+                    continue;
+                }
+
+                UpdateInfo update = connector.checkForUpdates(fingerprint, WAIT_TIMEOUT);
+                if (update == null) {
+                    Thread.sleep(RETRY_INTERVAL_MS);
+                    continue;
+                }
+                long throttle = Math.max(MIN_INTERVAL_MS, update.getThrottleTimeout() * 1000L);
+                String current = update.getStateFingerprint();
+                if (current.equals(fingerprint)) {
+                    // the camera may answer at once instead of holding the request
+                    Thread.sleep(Math.max(throttle, idleInterval));
+                    idleInterval = Math.min(idleInterval * 2, MAX_IDLE_INTERVAL_MS);
+                    continue;
+                }
+                idleInterval = MIN_INTERVAL_MS;
+
+                // the signature is taken before the listing, so that a change during the listing is not missed.
+                String fileSet = connector.getFileSetSignature();
+                if (fileSet != null && fileSet.equals(syncedFileSet)) {
+                    logger.debug("state is updated without the files: {}", current);
+                    contentsCreator.acceptFingerprint(current);
+                } else {
+                    logger.debug("state is updated: {} files: {}", current, fileSet);
+                    if (contentsCreator.sync()) {
+                        syncedFileSet = fileSet;
+                    } else {
+                        throttle = Math.max(throttle, RETRY_INTERVAL_MS);
+                    }
+                }
+                Thread.sleep(throttle);
+            }
+        } catch (InterruptedException e) {
+            logger.debug("canceled: {}", e.getMessage());
+        }
+    }
+}
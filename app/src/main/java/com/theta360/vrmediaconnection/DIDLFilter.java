@@ -0,0 +1,91 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Filter argument of Browse and Search, such as "dc:title,upnp:class,res@size".
+ * The required properties (id, parentID, restricted, dc:title and upnp:class) are always written.
+ * Naming an attribute of res includes res itself.
+ */
+public final class DIDLFilter {
+
+    public static final DIDLFilter ALL = new DIDLFilter(null);
+
+    private static final String RES = "res";
+
+    // null means all the properties.
+    private final Set<String> properties;
+    private final boolean res;
+
+    private DIDLFilter(Set<String> properties) {
+        this.properties = properties;
+        this.res = properties == null || properties.contains(RES) || containsAttributeOf(properties, RES);
+    }
+
+    public static DIDLFilter parse(String filter) {
+        if (filter == null) {
+            return ALL;
+        }
+        Set<String> properties = new HashSet<>();
+        for (String property : filter.split(",")) {
+            property = property.trim();
+            if (property.equals("*")) {
+                return ALL;
+            }
+            if (!property.isEmpty()) {
+                properties.add(property);
+            }
+        }
+        return properties.isEmpty() ? ALL : new DIDLFilter(properties);
+    }
+
+    /**
+     * @param property name of a property such as "dc:creator" or "upnp:albumArtURI"
+     */
+    public boolean includes(String property) {
+        return properties == null || properties.contains(property);
+    }
+
+    /**
+     * @param element "container" or "item"
+     * @param attribute name of the attribute such as "childCount"
+     */
+    public boolean includesAttribute(String element, String attribute) {
+        return properties == null || properties.contains("@" + attribute) || properties.contains(element + "@" + attribute);
+    }
+
+    public boolean includesRes() { return this.res; }
+
+    public boolean includesResAttribute(String attribute) {
+        return properties == null || properties.contains(RES + "@" + attribute);
+    }
+
+    @Override
+    public String toString() {
+        return properties == null ? "*" : properties.toString();
+    }
+
+    private static boolean containsAttributeOf(Set<String> properties, String element) {
+        for (String property : properties) {
+            if (property.startsWith(element + "@")) return true;
+        }
+        return false;
+    }
+}
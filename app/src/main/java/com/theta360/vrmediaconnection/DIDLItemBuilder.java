@@ -0,0 +1,74 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import org.fourthline.cling.support.model.DIDLObject;
+import org.fourthline.cling.support.model.ProtocolInfo;
+import org.fourthline.cling.support.model.Res;
+import org.fourthline.cling.support.model.dlna.DLNAProtocolInfo;
+import org.fourthline.cling.support.model.item.ImageItem;
+import org.fourthline.cling.support.model.item.Item;
+import org.fourthline.cling.support.model.item.VideoItem;
+
+import java.net.URI;
+
+/**
+ * Builds the DIDL object of an item from the attributes of its element.
+ * The protocol infos are never modified once they are built, so that they are shared by all the items.
+ */
+public final class DIDLItemBuilder {
+
+    public static final String VIDEO_CLASS = VideoItem.CLASS.getValue();
+    public static final String IMAGE_CLASS = ImageItem.CLASS.getValue();
+
+    private static final ProtocolInfo MP4 = new DLNAProtocolInfo(Constants.ProtocolInfo.MP4);
+    private static final ProtocolInfo JPEG = new DLNAProtocolInfo(Constants.ProtocolInfo.JPEG);
+
+    private DIDLItemBuilder() {
+    }
+
+    public static Item build(ContentElement element) {
+        ProtocolInfo protocolInfo = Constants.MimeType.MP4.equals(element.getMimeType()) ? MP4 : JPEG;
+        Res res = new Res(protocolInfo, element.getLength(), element.getVirtualUri());
+        res.setResolution(element.getResolution());
+
+        Item item;
+        if (VIDEO_CLASS.equals(element.getClazz())) {
+            item = new VideoItem(element.getId(), element.getParentId(), titleOf(element), Constants.Content.CREATOR, res);
+        } else {
+            item = new ImageItem(element.getId(), element.getParentId(), titleOf(element), Constants.Content.CREATOR, res);
+        }
+        item.addProperty(new DIDLObject.Property.UPNP.ALBUM_ART_URI(URI.create(element.getVirtualUri() + "?type=thumb")));
+        item.setRestricted(true);
+        if (element.getDate() != null) {
+            item.addProperty(new DIDLObject.Property.DC.DATE(element.getDate()));
+        }
+        return item;
+    }
+
+    /**
+     * @return dc:title of the element
+     */
+    public static String titleOf(ContentElement element) {
+        // The postfix "_360" should be added to the title.
+        // By this postfix, Oculus Go can recognize it as the spherical video.
+        if (VIDEO_CLASS.equals(element.getClazz())) {
+            return element.getTitle() + "_360";
+        }
+        return element.getTitle();
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import org.fourthline.cling.support.model.DIDLObject;
+import org.fourthline.cling.support.model.Res;
+import org.fourthline.cling.support.model.container.Container;
+import org.fourthline.cling.support.model.item.Item;
+
+/**
+ * Writes a DIDL-Lite document straight into a reusable buffer.
+ * The output has the same elements and attributes as DIDLParser generates for the objects of this plugin,
+ * without building a DOM. An instance is not thread safe.
+ */
+public class DIDLWriter {
+
+    private static final int INITIAL_CAPACITY = 16 * 1024;
+    // the buffer is dropped rather than kept when an unusually large document has been written.
+    private static final int MAX_RETAINED_CAPACITY = 256 * 1024;
+
+    private static final String HEADER = "<DIDL-Lite xmlns=\"urn:schemas-upnp-org:metadata-1-0/DIDL-Lite/\""
+            + " xmlns:dc=\"http://purl.org/dc/elements/1.1/\""
+            + " xmlns:sec=\"http://www.sec.co.kr/\""
+            + " xmlns:upnp=\"urn:schemas-upnp-org:metadata-1-0/upnp/\">";
+    private static final String FOOTER = "</DIDL-Lite>";
+    private static final String UNKNOWN_TITLE = "Unknown Title";
+
+    private StringBuilder buffer = new StringBuilder(INITIAL_CAPACITY);
+    private DIDLFilter filter = DIDLFilter.ALL;
+
+    /**
+     * Start a document which has only the properties of the filter.
+     */
+    public DIDLWriter begin(DIDLFilter filter) {
+        this.filter = filter;
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            buffer = new StringBuilder(INITIAL_CAPACITY);
+        }
+        buffer.setLength(0);
+        buffer.append(HEADER);
+        return this;
+    }
+
+    /**
+     * @param childCount number of the children in the snapshot being written
+     */
+    public DIDLWriter container(Container container, int childCount) {
+        buffer.append("<container");
+        attribute("id", container.getId());
+        attribute("parentID", container.getParentID());
+        if (filter.includesAttribute("container", "childCount")) {
+            attribute("childCount", Integer.toString(childCount));
+        }
+        attribute("restricted", container.isRestricted() ? "1" : "0");
+        if (filter.includesAttribute("container", "searchable")) {
+            attribute("searchable", container.isSearchable() ? "1" : "0");
+        }
+        buffer.append('>');
+        body(container);
+        buffer.append("</container>");
+        return this;
+    }
+
+    public DIDLWriter item(Item item) {
+        buffer.append("<item");
+        attribute("id", item.getId());
+        attribute("parentID", item.getParentID());
+        if (item.getRefID() != null && filter.includesAttribute("item", "refID")) {
+            attribute("refID", item.getRefID());
+        }
+        attribute("restricted", item.isRestricted() ? "1" : "0");
+        buffer.append('>');
+        body(item);
+        buffer.append("</item>");
+        return this;
+    }
+
+    public String end() {
+        buffer.append(FOOTER);
+        return buffer.toString();
+    }
+
+    private void body(DIDLObject object) {
+        element("dc:title", object.getTitle() != null ? object.getTitle() : UNKNOWN_TITLE);
+        if (object.getCreator() != null && filter.includes("dc:creator")) {
+            element("dc:creator", object.getCreator());
+        }
+        if (object.getWriteStatus() != null && filter.includes("upnp:writeStatus")) {
+            element("upnp:writeStatus", object.getWriteStatus().toString());
+        }
+        if (object.getClazz() != null) {
+            element("upnp:class", object.getClazz().getValue());
+        }
+
+        for (DIDLObject.Property property : object.getProperties()) {
+            if (property.getValue() == null) continue;
+            if (property instanceof DIDLObject.Property.UPNP.NAMESPACE && filter.includes("upnp:" + property.getDescriptorName())) {
+                element("upnp:" + property.getDescriptorName(), property.getValue().toString());
+            }
+        }
+        for (DIDLObject.Property property : object.getProperties()) {
+            if (property.getValue() == null) continue;
+            if (property instanceof DIDLObject.Property.DC.NAMESPACE && filter.includes("dc:" + property.getDescriptorName())) {
+                element("dc:" + property.getDescriptorName(), property.getValue().toString());
+            }
+        }
+
+        if (!filter.includesRes()) {
+            return;
+        }
+        // protocolInfo is required for res, so that it is written regardless of the filter.
+        for (Res res : object.getResources()) {
+            if (res == null) continue;
+            buffer.append("<res");
+            if (res.getProtocolInfo() != null) {
+                attribute("protocolInfo", res.getProtocolInfo().toString());
+            }
+            if (res.getSize() != null && filter.includesResAttribute("size")) {
+                attribute("size", res.getSize().toString());
+            }
+            if (res.getDuration() != null && filter.includesResAttribute("duration")) {
+                attribute("duration", res.getDuration());
+            }
+            if (res.getBitrate() != null && filter.includesResAttribute("bitrate")) {
+                attribute("bitrate", res.getBitrate().toString());
+            }
+            if (res.getResolution() != null && filter.includesResAttribute("resolution")) {
+                attribute("resolution", res.getResolution());
+            }
+            buffer.append('>');
+            escape(res.getValue() != null ? res.getValue() : "", false);
+            buffer.append("</res>");
+        }
+    }
+
+    private void attribute(String name, String value) {
+        buffer.append(' ').append(name).append("=\"");
+        escape(value, true);
+        buffer.append('"');
+    }
+
+    private void element(String name, String text) {
+        buffer.append('<').append(name).append('>');
+        escape(text, false);
+        buffer.append("</").append(name).append('>');
+    }
+
+    // escaped as the DOM serializer of DIDLParser does; a quote is escaped only in an attribute.
+    private void escape(String text, boolean attribute) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    buffer.append("&amp;");
+                    break;
+                case '<':
+                    buffer.append("&lt;");
+                    break;
+                case '>':
+                    buffer.append("&gt;");
+                    break;
+                case '"':
+                    if (attribute) {
+                        buffer.append("&quot;");
+                    } else {
+                        buffer.append(c);
+                    }
+                    break;
+                default:
+                    buffer.append(c);
+                    break;
+            }
+        }
+    }
+}
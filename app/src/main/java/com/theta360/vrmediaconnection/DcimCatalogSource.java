@@ -0,0 +1,328 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import android.graphics.BitmapFactory;
+import android.media.ExifInterface;
+import android.media.MediaMetadataRetriever;
+
+import com.theta360.vrmediaconnection.network.HttpConnector;
+import com.theta360.vrmediaconnection.network.HttpListListener;
+import com.theta360.vrmediaconnection.network.ImageInfo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Lists the files by walking the directories of the camera in DCIM, without the OSC API.
+ * Every file is only stat'ed; the dimensions, the capture date and the projection are read from the headers
+ * of the new or changed files, in parallel on the threads of this source.
+ * The file ids are the URL of DCIM followed by the paths of the files, as those of camera.listFiles are. The URL is
+ * taken from a file listed before, such as from the snapshot, and it is asked the camera only if none is known.
+ */
+public class DcimCatalogSource implements CatalogSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(DcimCatalogSource.class);
+
+    private static final String DIR_SUFFIX = "RICOH";
+    // "2015:07:10 11:05:18" of EXIF in the local time
+    private static final Pattern EXIF_DATE = Pattern.compile("(\\d{4}):(\\d{2}):(\\d{2}) (\\d{2}):(\\d{2}):(\\d{2})");
+    // "20150710T020518.000Z" of MediaMetadataRetriever in UTC
+    private static final Pattern VIDEO_DATE = Pattern.compile("(\\d{4})(\\d{2})(\\d{2})T(\\d{2})(\\d{2})(\\d{2})(?:\\.\\d+)?Z?");
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    // files of a task whose headers are read one after another
+    private static final int READ_TASK_SIZE = 16;
+    private static final long READER_KEEP_ALIVE_SECONDS = 30;
+
+    private HttpConnector connector;
+    // URL of DCIM on the camera, which does not change once it is acquired
+    private volatile String dcimUrl;
+    // the reading threads stop while no file is read, so that the executor is never shut down.
+    private ThreadPoolExecutor readers;
+    // files read at the last listing by their paths
+    private Map<String, ReadFile> readFiles = new HashMap<>();
+
+    public DcimCatalogSource(HttpConnector connector) {
+        this.connector = connector;
+        int threads = Runtime.getRuntime().availableProcessors();
+        this.readers = new ThreadPoolExecutor(threads, threads,
+                READER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        this.readers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * The files are passed to the listener at once, after all of them are read.
+     * A listed file whose headers cannot be read keeps its entry, so that its contents are not removed.
+     */
+    @Override
+    public synchronized int list(Map<String, ImageInfo> listed, HttpListListener listener) {
+        File[] dirs = new File(Constants.Storage.DCIM).listFiles();
+        if (dirs == null) {
+            logger.warn("failed to list {}.", Constants.Storage.DCIM);
+            return -1;
+        }
+        List<File> files = new ArrayList<>();
+        for (File dir : dirs) {
+            if (!dir.isDirectory() || !dir.getName().endsWith(DIR_SUFFIX)) continue;
+            File[] dirFiles = dir.listFiles();
+            if (dirFiles == null) {
+                logger.warn("failed to list {}.", dir.getPath());
+                return -1;
+            }
+            for (File file : dirFiles) {
+                if (file.isFile() && (isJpeg(file) || isMp4(file))) {
+                    files.add(file);
+                }
+            }
+        }
+        if (files.isEmpty()) {
+            this.readFiles = new HashMap<>();
+            return 0;
+        }
+        // the latest file is listed first, as the camera does.
+        Collections.sort(files, Collections.<File>reverseOrder());
+
+        String dcimUrl = getDcimUrl(listed);
+        if (dcimUrl == null) {
+            logger.warn("URL of DCIM is unknown.");
+            return -1;
+        }
+
+        // only the files which are new or changed since the last listing are read.
+        ReadFile[] current = new ReadFile[files.size()];
+        List<Integer> changed = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            long length = file.length();
+            long lastModified = file.lastModified();
+            ReadFile read = this.readFiles.get(file.getPath());
+            ImageInfo known = listed.get(fileIdOf(file, dcimUrl));
+            if (read != null && read.length == length && read.lastModified == lastModified) {
+                current[i] = read;
+            } else if (read == null && known != null && known.getFileSize() == length) {
+                // listed before this source read it, such as restored from the snapshot
+                current[i] = new ReadFile(length, lastModified, known);
+            } else {
+                current[i] = new ReadFile(length, lastModified, null);
+                changed.add(i);
+            }
+        }
+        try {
+            read(files, current, changed, dcimUrl);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.debug("canceled: {}", e.getMessage());
+            return -1;
+        } catch (ExecutionException e) {
+            logger.error("failed to read files. {}", e.toString());
+            return -1;
+        }
+
+        Map<String, ReadFile> readFiles = new HashMap<>();
+        List<ImageInfo> infos = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            ReadFile read = current[i];
+            if (read.info != null) {
+                readFiles.put(file.getPath(), read);
+                infos.add(read.info);
+                continue;
+            }
+            // the file is read again at the next listing.
+            ImageInfo known = listed.get(fileIdOf(file, dcimUrl));
+            if (known != null) {
+                infos.add(known);
+            }
+        }
+        this.readFiles = readFiles;
+        logger.debug("read {} of {} files.", changed.size(), files.size());
+
+        if (!infos.isEmpty()) {
+            listener.onListed(infos);
+        }
+        return infos.size();
+    }
+
+    // the headers of the changed files are read into their entries, which keep null if they cannot be read.
+    private void read(final List<File> files, final ReadFile[] current, List<Integer> changed, final String dcimUrl)
+            throws InterruptedException, ExecutionException {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int from = 0; from < changed.size(); from += READ_TASK_SIZE) {
+            final List<Integer> indexes = changed.subList(from, Math.min(from + READ_TASK_SIZE, changed.size()));
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i : indexes) {
+                        current[i].info = read(files.get(i), current[i].length, dcimUrl);
+                    }
+                    return null;
+                }
+            });
+        }
+        for (Future<Void> future : readers.invokeAll(tasks)) {
+            future.get();
+        }
+    }
+
+    // the camera is asked only for the first listing of a catalog which has no file yet.
+    private String getDcimUrl(Map<String, ImageInfo> listed) {
+        if (this.dcimUrl == null) {
+            long start = System.nanoTime();
+            String dcimUrl = null;
+            for (String fileId : listed.keySet()) {
+                dcimUrl = HttpConnector.toDcimUrl(fileId);
+                if (dcimUrl != null) break;
+            }
+            String from = "catalog";
+            if (dcimUrl == null) {
+                dcimUrl = connector.getDcimUrl();
+                from = "camera";
+            }
+            logger.debug("URL of DCIM from the {} in {} us: {}", from, (System.nanoTime() - start) / 1000, dcimUrl);
+            this.dcimUrl = dcimUrl;
+        }
+        return this.dcimUrl;
+    }
+
+    // null if the headers cannot be read, such as of a file being written
+    private ImageInfo read(File file, long length, String dcimUrl) {
+        ImageInfo info = new ImageInfo();
+        info.setFileName(file.getName());
+        info.setFileId(fileIdOf(file, dcimUrl));
+        info.setFileSize(length);
+
+        try {
+            if (isMp4(file)) {
+                readVideo(file, info);
+            } else {
+                readImage(file, info);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("failed to read {}. {}", file.getPath(), e.toString());
+            return null;
+        }
+        return info;
+    }
+
+    private void readImage(File file, ImageInfo info) throws IOException {
+        // only the bounds are decoded from the header.
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("no size of image");
+        }
+
+        info.setFileFormat(ImageInfo.FILE_FORMAT_CODE_EXIF_JPEG);
+        info.setWidth(options.outWidth);
+        info.setHeight(options.outHeight);
+        String date = new ExifInterface(file.getPath()).getAttribute(ExifInterface.TAG_DATETIME_ORIGINAL);
+        info.setCaptureDate(toCaptureDate(date, EXIF_DATE, TimeZone.getDefault()));
+    }
+
+    private void readVideo(File file, ImageInfo info) throws IOException {
+        String projectionType = SphericalMetadata.projectionOf(file);
+        if (projectionType == null) {
+            throw new IOException("no movie header");
+        }
+
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(file.getPath());
+            info.setFileFormat(ImageInfo.FILE_FORMAT_CODE_EXIF_MPEG);
+            info.setProjectionType(projectionType);
+            info.setWidth(Integer.parseInt(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH)));
+            info.setHeight(Integer.parseInt(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT)));
+            String date = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DATE);
+            info.setCaptureDate(toCaptureDate(date, VIDEO_DATE, UTC));
+        } finally {
+            retriever.release();
+        }
+    }
+
+    /**
+     * @param date date of the header
+     * @param pattern pattern of the date whose groups are the year, the month, the day, the hour, the minute and the second
+     * @param zone time zone of the date
+     * @return "2015:07:10 11:05:18+09:00" in the time zone of the camera, as camera.listFiles has, or null if it is unknown
+     */
+    private static String toCaptureDate(String date, Pattern pattern, TimeZone zone) {
+        if (date == null) return null;
+        Matcher matcher = pattern.matcher(date.trim());
+        if (!matcher.matches()) return null;
+
+        Calendar calendar = Calendar.getInstance(zone, Locale.US);
+        calendar.clear();
+        calendar.set(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)) - 1, Integer.parseInt(matcher.group(3)),
+                Integer.parseInt(matcher.group(4)), Integer.parseInt(matcher.group(5)), Integer.parseInt(matcher.group(6)));
+        long time = calendar.getTimeInMillis();
+
+        TimeZone local = TimeZone.getDefault();
+        Calendar localCalendar = Calendar.getInstance(local, Locale.US);
+        localCalendar.setTimeInMillis(time);
+        int offset = local.getOffset(time) / 60000;
+        return String.format(Locale.US, "%04d:%02d:%02d %02d:%02d:%02d%c%02d:%02d",
+                localCalendar.get(Calendar.YEAR), localCalendar.get(Calendar.MONTH) + 1, localCalendar.get(Calendar.DAY_OF_MONTH),
+                localCalendar.get(Calendar.HOUR_OF_DAY), localCalendar.get(Calendar.MINUTE), localCalendar.get(Calendar.SECOND),
+                offset < 0 ? '-' : '+', Math.abs(offset) / 60, Math.abs(offset) % 60);
+    }
+
+    private static String fileIdOf(File file, String dcimUrl) {
+        return dcimUrl + "/" + file.getParentFile().getName() + "/" + file.getName();
+    }
+
+    private static boolean isJpeg(File file) {
+        return file.getName().toLowerCase().endsWith(".jpg");
+    }
+
+    private static boolean isMp4(File file) {
+        return file.getName().toLowerCase().endsWith(".mp4");
+    }
+
+    private static final class ReadFile {
+
+        private final long length;
+        private final long lastModified;
+        // null until the headers are read
+        private ImageInfo info;
+
+        private ReadFile(long length, long lastModified, ImageInfo info) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.info = info;
+        }
+    }
+}
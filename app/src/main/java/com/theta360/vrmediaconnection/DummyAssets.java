@@ -0,0 +1,90 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import android.content.Context;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The dummy videos served for the contents of "Original Video".
+ * Both assets are read once and shared by every response and by the catalog.
+ */
+public class DummyAssets {
+
+    private static final Logger logger = LoggerFactory.getLogger(DummyAssets.class);
+
+    private final Asset processing;
+    private final Asset done;
+
+    public DummyAssets(Context context) {
+        this.processing = load(context, Constants.Content.DUMMY_FILE_PROCESSING);
+        this.done = load(context, Constants.Content.DUMMY_FILE_DONE);
+    }
+
+    public Asset getProcessing() { return this.processing; }
+
+    public Asset getDone() { return this.done; }
+
+    private static Asset load(Context context, String name) {
+        try (InputStream in = context.getResources().getAssets().open(name)) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[16 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                baos.write(buffer, 0, read);
+            }
+            Asset asset = new Asset(name, baos.toByteArray());
+            logger.debug("loaded dummy asset: {} length:{}", name, asset.getLength());
+            return asset;
+        } catch (IOException e) {
+            logger.error("failed to read file {}.", name);
+            throw new RuntimeException("failed to read file " + name, e);
+        }
+    }
+
+    public static class Asset {
+
+        private final String name;
+        private final byte[] data;
+        private final String eTag;
+
+        private Asset(String name, byte[] data) {
+            this.name = name;
+            this.data = data;
+            this.eTag = "\"" + name + "-" + Long.toHexString(data.length) + "\"";
+        }
+
+        public String getName() { return this.name; }
+
+        // validator of the asset itself, so that it changes exactly when the other asset is served
+        public String getETag() { return this.eTag; }
+
+        public long getLength() { return this.data.length; }
+
+        // every stream reads the shared buffer; nothing is copied.
+        public InputStream openStream() {
+            return new ByteArrayInputStream(this.data);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Locates the JPEG thumbnail embedded in IFD1 of the EXIF segment of a JPEG file.
+ * Only the marker segments before the image data are read; the image itself is never decoded.
+ */
+public final class ExifThumbnail {
+
+    private static final int MARKER_SOI = 0xD8;
+    private static final int MARKER_EOI = 0xD9;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_APP1 = 0xE1;
+    private static final int MARKER_TEM = 0x01;
+    private static final int MARKER_RST0 = 0xD0;
+    private static final int MARKER_RST7 = 0xD7;
+
+    private static final int TAG_JPEG_INTERCHANGE_FORMAT = 0x0201;
+    private static final int TAG_JPEG_INTERCHANGE_FORMAT_LENGTH = 0x0202;
+    private static final int TYPE_SHORT = 3;
+    private static final int IFD_ENTRY_SIZE = 12;
+
+    private static final byte[] EXIF_HEADER = {'E', 'x', 'i', 'f', 0, 0};
+
+    private ExifThumbnail() {}
+
+    /**
+     * Find the embedded thumbnail.
+     *
+     * @param file JPEG file
+     * @return region of the file holding the thumbnail, or null if no thumbnail is embedded
+     * @throws IOException if the file cannot be read
+     */
+    public static ByteRange find(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.read() != 0xFF || raf.read() != MARKER_SOI) {
+                return null;
+            }
+
+            while (true) {
+                int b = raf.read();
+                if (b < 0) return null;
+                if (b != 0xFF) return null; // not at a marker: the file is broken
+                int marker;
+                do {
+                    marker = raf.read(); // skip fill bytes
+                } while (marker == 0xFF);
+                if (marker < 0 || marker == MARKER_SOS || marker == MARKER_EOI) {
+                    return null;
+                }
+                if (marker == MARKER_TEM || (marker >= MARKER_RST0 && marker <= MARKER_RST7)) {
+                    continue; // standalone markers have no length
+                }
+
+                int length = raf.readUnsignedShort();
+                if (length < 2) return null;
+                long dataOffset = raf.getFilePointer();
+
+                if (marker == MARKER_APP1 && length - 2 > EXIF_HEADER.length) {
+                    byte[] data = new byte[length - 2];
+                    raf.readFully(data);
+                    if (startsWith(data, EXIF_HEADER)) {
+                        ByteRange range = findInTiff(data, EXIF_HEADER.length);
+                        if (range == null) return null;
+                        return new ByteRange(dataOffset + range.getStart(), dataOffset + range.getEnd());
+                    }
+                }
+                raf.seek(dataOffset + length - 2);
+            }
+        }
+    }
+
+    // returns the region of the thumbnail relative to data
+    private static ByteRange findInTiff(byte[] data, int tiff) {
+        if (!has(data, tiff, 8)) return null;
+        boolean littleEndian;
+        if (data[tiff] == 'I' && data[tiff + 1] == 'I') {
+            littleEndian = true;
+        } else if (data[tiff] == 'M' && data[tiff + 1] == 'M') {
+            littleEndian = false;
+        } else {
+            return null;
+        }
+        if (u16(data, tiff + 2, littleEndian) != 42) return null;
+
+        long ifd0 = u32(data, tiff + 4, littleEndian);
+        if (ifd0 > Integer.MAX_VALUE || !has(data, tiff + (int) ifd0, 2)) return null;
+        int ifd0Start = tiff + (int) ifd0;
+        int count0 = u16(data, ifd0Start, littleEndian);
+        int nextOffset = ifd0Start + 2 + count0 * IFD_ENTRY_SIZE;
+        if (!has(data, nextOffset, 4)) return null;
+
+        long ifd1 = u32(data, nextOffset, littleEndian);
+        if (ifd1 == 0 || ifd1 > Integer.MAX_VALUE || !has(data, tiff + (int) ifd1, 2)) return null;
+        int ifd1Start = tiff + (int) ifd1;
+        int count1 = u16(data, ifd1Start, littleEndian);
+
+        long thumbOffset = -1;
+        long thumbLength = -1;
+        for (int i = 0; i < count1; i++) {
+            int entry = ifd1Start + 2 + i * IFD_ENTRY_SIZE;
+            if (!has(data, entry, IFD_ENTRY_SIZE)) return null;
+            int tag = u16(data, entry, littleEndian);
+            int type = u16(data, entry + 2, littleEndian);
+            long value = type == TYPE_SHORT ? u16(data, entry + 8, littleEndian) : u32(data, entry + 8, littleEndian);
+            if (tag == TAG_JPEG_INTERCHANGE_FORMAT) {
+                thumbOffset = value;
+            } else if (tag == TAG_JPEG_INTERCHANGE_FORMAT_LENGTH) {
+                thumbLength = value;
+            }
+        }
+        if (thumbOffset < 0 || thumbLength < 4 || tiff + thumbOffset + thumbLength > data.length) {
+            return null;
+        }
+
+        int start = tiff + (int) thumbOffset;
+        // the thumbnail must be a JPEG stream by itself
+        if ((data[start] & 0xFF) != 0xFF || (data[start + 1] & 0xFF) != MARKER_SOI) {
+            return null;
+        }
+        return new ByteRange(start, start + thumbLength - 1);
+    }
+
+    private static boolean has(byte[] data, int offset, int length) {
+        return offset >= 0 && offset + length <= data.length;
+    }
+
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        if (data.length < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    private static int u16(byte[] data, int offset, boolean littleEndian) {
+        int b0 = data[offset] & 0xFF;
+        int b1 = data[offset + 1] & 0xFF;
+        return littleEndian ? (b1 << 8) | b0 : (b0 << 8) | b1;
+    }
+
+    private static long u32(byte[] data, int offset, boolean littleEndian) {
+        long high = u16(data, offset + (littleEndian ? 2 : 0), littleEndian);
+        long low = u16(data, offset + (littleEndian ? 0 : 2), littleEndian);
+        return (high << 16) | low;
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Stream of the bytes [offset, offset + length) of a file.
+ * Read as a stream, the file is read straight into the caller's buffer from a seek to the offset, so starting
+ * at an offset costs no skip and nothing is buffered in between.
+ * The region can rather be transferred to a channel, which sends a socket channel the file by the kernel
+ * without any copy through the heap.
+ */
+public class FileRegionInputStream extends InputStream {
+
+    private final RandomAccessFile raf;
+    private long end;
+    private long position;
+    // the file pointer is moved to the position by the next read
+    private boolean seeking = true;
+
+    public FileRegionInputStream(File file, long offset, long length) throws IOException {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("invalid region offset:" + offset + " length:" + length);
+        }
+        this.raf = new RandomAccessFile(file, "r");
+        this.position = offset;
+        this.end = offset + length;
+    }
+
+    /**
+     * Stream of the whole file, whose size is taken from the opened file rather than from its metadata.
+     */
+    public FileRegionInputStream(File file) throws IOException {
+        this.raf = new RandomAccessFile(file, "r");
+        this.position = 0;
+        this.end = this.raf.length();
+    }
+
+    /**
+     * @return size of the file at the time it was opened as a whole, which is the end of its region
+     */
+    public long getFileSize() {
+        return this.end;
+    }
+
+    /**
+     * Narrow the stream to the bytes [offset, offset + length) before it is read.
+     */
+    public void setRegion(long offset, long length) {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("invalid region offset:" + offset + " length:" + length);
+        }
+        this.position = offset;
+        this.end = offset + length;
+        this.seeking = true;
+    }
+
+    /**
+     * Transfer the rest of the region to the channel, instead of reading it.
+     * @return number of bytes transferred, which is short of the region if the file has been truncated
+     */
+    public long transferTo(WritableByteChannel target) throws IOException {
+        FileChannel channel = raf.getChannel();
+        long start = position;
+        while (position < end) {
+            long transferred = channel.transferTo(position, end - position, target);
+            if (transferred <= 0) break;
+            position += transferred;
+        }
+        seeking = true;
+        return position - start;
+    }
+
+    /**
+     * @return number of bytes left in the region
+     */
+    public long remaining() {
+        return Math.max(0, end - position);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int read = read(b, 0, 1);
+        return read < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        long remaining = end - position;
+        if (remaining <= 0) return -1;
+
+        if (seeking) {
+            raf.seek(position);
+            seeking = false;
+        }
+        int count = (int) Math.min(len, remaining);
+        int read = raf.read(b, off, count);
+        if (read < 0) return -1;
+        position += read;
+        return read;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, end - position));
+        position += skipped;
+        seeking |= skipped > 0;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Math.max(0, end - position), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        raf.close();
+    }
+}
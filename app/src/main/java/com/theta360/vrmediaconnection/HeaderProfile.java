@@ -0,0 +1,87 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import fi.iki.elonen.NanoHTTPD.Response;
+
+/**
+ * Immutable set of the response headers which depend only on the kind of the content.
+ * The profile of a content is resolved once from its MIME type and kept by its ordinal,
+ * so that a response allocates no headers of its own.
+ */
+public final class HeaderProfile {
+
+    public static final HeaderProfile JPEG = new HeaderProfile(0, Constants.MimeType.JPEG, Constants.ContentFeatures.JPEG);
+    public static final HeaderProfile MP4 = new HeaderProfile(1, Constants.MimeType.MP4, Constants.ContentFeatures.MP4);
+    // by their ordinals
+    private static final HeaderProfile[] VALUES = {JPEG, MP4};
+
+    private final int ordinal;
+    private final String mimeType;
+    private final String contentFeatures;
+    private final String[] names;
+    private final String[] values;
+
+    private HeaderProfile(int ordinal, String mimeType, String contentFeatures) {
+        this.ordinal = ordinal;
+        this.mimeType = mimeType;
+        this.contentFeatures = contentFeatures;
+        this.names = new String[]{
+                "Accept-Ranges",
+                "Cache-Control",
+                "transferMode.dlna.org",
+                "contentFeatures.dlna.org"
+        };
+        this.values = new String[]{
+                "bytes",
+                "no-cache",
+                "Streaming",
+                contentFeatures
+        };
+    }
+
+    public static HeaderProfile of(String mimeType) {
+        switch (mimeType) {
+            case Constants.MimeType.JPEG:
+                return JPEG;
+            case Constants.MimeType.MP4:
+                return MP4;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return the profile of the ordinal, or null if the ordinal is negative
+     */
+    public static HeaderProfile of(int ordinal) {
+        return ordinal < 0 ? null : VALUES[ordinal];
+    }
+
+    // index of the profile, which is kept in a column of the CatalogStore
+    public int ordinal() { return this.ordinal; }
+
+    public String getMimeType() { return this.mimeType; }
+
+    public String getContentFeatures() { return this.contentFeatures; }
+
+    public void addTo(Response response) {
+        for (int i = 0; i < names.length; i++) {
+            response.addHeader(names[i], values[i]);
+        }
+    }
+}
@@ -25,33 +25,77 @@ import org.slf4j.LoggerFactory;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import fi.iki.elonen.NanoHTTPD;
 
 public class HttpServer extends NanoHTTPD {
 
     private static final Logger logger = LoggerFactory.getLogger(HttpServer.class);
+    private static final byte[] EMPTY_BODY = new byte[0];
 
     private Context context;
     private String ipAddress;
     private Contents contents;
     private VideoConverter videoConverter;
+    private DummyAssets dummyAssets;
+    private ThumbnailCache thumbnailCache;
+    // the socket of the request being served on the thread
+    private final ThreadLocal<Socket> clientSocket = new ThreadLocal<>();
 
-    public HttpServer(Context context, String ipAddress, Contents contents, VideoConverter videoConverter) {
+    public HttpServer(Context context, String ipAddress, Contents contents, VideoConverter videoConverter, DummyAssets dummyAssets) {
         super(Constants.Net.PORT);
         this.context = context;
         this.ipAddress = ipAddress;
         this.contents = contents;
         this.videoConverter = videoConverter;
+        this.dummyAssets = dummyAssets;
+        this.thumbnailCache = new ThumbnailCache(
+                new File(context.getCacheDir(), Constants.Cache.THUMBNAIL_DIR_NAME),
+                Constants.Cache.THUMBNAIL_MEMORY_BYTES,
+                Constants.Cache.THUMBNAIL_DISK_BYTES);
+        // the accepted sockets have channels, which the files are transferred to.
+        setServerSocketFactory(new ServerSocketFactory() {
+            @Override
+            public ServerSocket create() throws IOException {
+                return ServerSocketChannel.open().socket();
+            }
+        });
         logger.debug("built server: http://{}:{}", this.ipAddress, Constants.Net.PORT);
     }
 
+    @Override
+    protected ClientHandler createClientHandler(final Socket finalAccept, InputStream inputStream) {
+        return new ClientHandler(inputStream, finalAccept) {
+            @Override
+            public void run() {
+                clientSocket.set(finalAccept);
+                try {
+                    super.run();
+                } finally {
+                    clientSocket.remove();
+                }
+            }
+        };
+    }
+
     @Override
     public Response serve(IHTTPSession session) {
         Method method = session.getMethod();
@@ -59,6 +103,9 @@ public class HttpServer extends NanoHTTPD {
             case GET:
                 return this.serveFile(session);
 
+            case HEAD:
+                return this.serveHead(session);
+
             default:
                 return newFixedLengthResponse(Response.Status.METHOD_NOT_ALLOWED,
                         Constants.MimeType.PLAINTEXT,
@@ -72,32 +119,38 @@ public class HttpServer extends NanoHTTPD {
         Map<String, List<String>> params = session.getParameters();
         logger.debug("uri:{} headers:{} params:{}", uri, headers, params);
 
-        // thumbnail
-        if (!params.isEmpty()) {
-            List<String> types = params.get("type");
-            if (types.contains("thumb")) {
-                return serveThumbnail(uri);
-            }
+        ContentElement element = contents.getContentElement(uri);
+        if (element == null || element.getHeaderProfile() == null) {
+            logger.warn("URI [{}] is not found.", uri);
+            return newFixedLengthResponse(Response.Status.NOT_FOUND, Constants.MimeType.PLAINTEXT, "URI [" + uri + "] is not found.");
         }
 
-        String range = null;
-        for (String key : headers.keySet()) {
-            if (key.equals("range")) {
-                range = headers.get(key);
-            }
+        // thumbnail
+        if (isThumbnailRequest(params)) {
+            return serveThumbnail(element, headers);
         }
 
-        try {
+        if (isCorrectionOriginalContent(uri)) {
+            return serveDummyResponse(element, headers);
+        }
 
-            if (isCorrectionOriginalContent(uri)) {
-                return serveDummyResponse(uri);
-            }
+        if (isNotModified(headers, element.getETag(), element.getLastModified())) {
+            return newNotModifiedResponse(element.getETag(), element.getLastModified());
+        }
+        String range = headers.get("range");
+        if (range != null && !matchesIfRange(headers, element.getETag(), element.getLastModified())) {
+            range = null;
+        }
 
+        try {
+            Response response;
             if (range == null) {
-                return getFullResponse(uri);
+                response = getFullResponse(element);
             } else {
-                return getPartialResponse(uri, range);
+                response = getPartialResponse(element, range);
             }
+            addValidatorHeaders(response, element.getETag(), element.getLastModified());
+            return response;
 
         } catch (FileNotFoundException e) {
             logger.error("URI [{}] is not found.", uri);
@@ -114,144 +167,314 @@ public class HttpServer extends NanoHTTPD {
         }
     }
 
-    private Response serveThumbnail(String id) {
-        ContentElement element = contents.getContentElement(id);
-        if (element == null) {
-            logger.warn("failed to serve thumbnail. id [{}] is not found.", id);
-            return newFixedLengthResponse(Response.Status.NOT_FOUND, Constants.MimeType.PLAINTEXT, "id [" + id + "] is not found.");
-        }
-        Bitmap thumb = element.createThumbnail();
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        thumb.compress(Bitmap.CompressFormat.JPEG, 100, baos);
-        ByteArrayInputStream stream = new ByteArrayInputStream(baos.toByteArray());
-        return newFixedLengthResponse(Response.Status.OK, Constants.MimeType.JPEG, stream, baos.size());
-    }
+    private Response serveHead(IHTTPSession session) {
+        String uri = session.getUri();
+        Map<String, String> headers = session.getHeaders();
+        logger.debug("HEAD uri:{}", uri);
 
-    private Response serveDummyResponse(String uri) {
         ContentElement element = contents.getContentElement(uri);
-        if (element == null) {
-            logger.warn("failed to serve dummy response. id [{}] is not found.", uri);
+        if (element == null || element.getHeaderProfile() == null) {
+            logger.warn("failed to serve HEAD. id [{}] is not found.", uri);
             return newFixedLengthResponse(Response.Status.NOT_FOUND, Constants.MimeType.PLAINTEXT, "id [" + uri + "] is not found.");
         }
 
-        String dummyFileName = "";
-        if (existsCorrectedData(uri)) {
-            dummyFileName = Constants.Content.DUMMY_FILE_DONE;
-        } else {
-            dummyFileName = Constants.Content.DUMMY_FILE_PROCESSING;
-            this.videoConverter.push(element);
+        if (isThumbnailRequest(session.getParameters())) {
+            return serveThumbnailHead(element, headers);
+        }
+        if (isCorrectionOriginalContent(uri)) {
+            return serveDummyHead(element, headers);
+        }
+
+        if (isNotModified(headers, element.getETag(), element.getLastModified())) {
+            return newNotModifiedResponse(element.getETag(), element.getLastModified());
+        }
+        // the size is taken from the file as GET takes it, since the length of the catalog may lag behind the file.
+        File file = new File(element.getLocalPath());
+        if (!file.isFile()) {
+            logger.error("URI [{}] is not found.", uri);
+            return newFixedLengthResponse(Response.Status.NOT_FOUND, Constants.MimeType.PLAINTEXT, "URI [" + uri + "] is not found.");
+        }
+        HeaderProfile profile = element.getHeaderProfile();
+        Response response = newFixedLengthResponse(Response.Status.OK, profile.getMimeType(),
+                new ByteArrayInputStream(EMPTY_BODY), file.length());
+        profile.addTo(response);
+        addValidatorHeaders(response, element.getETag(), element.getLastModified());
+        return response;
+    }
+
+    private Response serveThumbnail(final ContentElement element, Map<String, String> headers) {
+        String id = element.getId();
+        String eTag = thumbnailETag(element);
+        if (isNotModified(headers, eTag, element.getLastModified())) {
+            return newNotModifiedResponse(eTag, element.getLastModified());
         }
 
-        logger.debug("response dummy: {}", dummyFileName);
+        // images carry a thumbnail in their EXIF, which can be sent as it is.
+        if (element.getHeaderProfile() == HeaderProfile.JPEG) {
+            Response embedded = serveEmbeddedThumbnail(element, eTag);
+            if (embedded != null) {
+                return embedded;
+            }
+        }
 
-        final InputStream stream;
-        final long length;
+        // the key contains the validator, so a changed file never hits a stale thumbnail.
+        String key = id + eTag;
+        byte[] data;
         try {
-            stream = context.getResources().getAssets().open(dummyFileName);
-            length = context.getResources().getAssets().openFd(dummyFileName).getLength();
-        } catch (IOException e) {
-            logger.error("failed to read file {}.", dummyFileName);
-            throw new RuntimeException("failed to read file " + dummyFileName, e);
+            data = thumbnailCache.get(key, new Callable<byte[]>() {
+                @Override
+                public byte[] call() {
+                    Bitmap thumb = element.createThumbnail();
+                    if (thumb == null) {
+                        return null;
+                    }
+                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                    thumb.compress(Bitmap.CompressFormat.JPEG, 100, baos);
+                    return baos.toByteArray();
+                }
+            });
+        } catch (InterruptedException | ExecutionException e) {
+            logger.error("failed to create thumbnail of id [{}]. {}", id, e.getMessage());
+            data = null;
         }
-        Response response = newFixedLengthResponse(Response.Status.OK, Constants.MimeType.MP4, stream, length);
-        response.addHeader("Accept-Ranges", "bytes");
-        response.addHeader("Cache-Control", "no-cache");
-        response.addHeader("transferMode.dlna.org", "Streaming");
-        response.addHeader("contentFeatures.dlna.org", "DLNA.ORG_PN=AVC_MP4_BL_CIF15_AAC_520;DLNA.ORG_OP=01;DLNA.ORG_CI=0");
+        if (data == null) {
+            logger.warn("failed to create thumbnail of id [{}].", id);
+            return newFixedLengthResponse(Response.Status.INTERNAL_ERROR, Constants.MimeType.PLAINTEXT, "failed to create thumbnail of id [" + id + "].");
+        }
+        logger.debug("thumbnail cache: {}", thumbnailCache);
 
+        Response response = newFixedLengthResponse(Response.Status.OK, Constants.MimeType.JPEG, new ByteArrayInputStream(data), data.length);
+        response.addHeader("Cache-Control", "no-cache");
+        addValidatorHeaders(response, eTag, element.getLastModified());
         return response;
     }
 
-    private Response getFullResponse(String uri) throws FileNotFoundException{
-        File file = getInputStream(uri);
-        FileInputStream stream = new FileInputStream(file);
-        String mimeType = getMimeType(uri);
-        Response response = newFixedLengthResponse(Response.Status.OK, mimeType, stream, file.length());
-        response.addHeader("Accept-Ranges", "bytes");
-        response.addHeader("Cache-Control", "no-cache");
-        response.addHeader("transferMode.dlna.org", "Streaming");
-
-        switch (mimeType) {
-            case Constants.MimeType.JPEG:
-                response.addHeader("contentFeatures.dlna.org", "DLNA.ORG_PN=JPEG_LRG;DLNA.ORG_OP=01;DLNA.ORG_CI=0");
-                break;
-            case Constants.MimeType.MP4:
-                response.addHeader("contentFeatures.dlna.org", "DLNA.ORG_PN=AVC_MP4_BL_CIF15_AAC_520;DLNA.ORG_OP=01;DLNA.ORG_CI=0");
-                break;
-            default:
-                break;
+    // answered from what is known without making the thumbnail: the embedded thumbnail of an image is only located,
+    // and a made thumbnail is only looked up in the cache.
+    private Response serveThumbnailHead(ContentElement element, Map<String, String> headers) {
+        String eTag = thumbnailETag(element);
+        if (isNotModified(headers, eTag, element.getLastModified())) {
+            return newNotModifiedResponse(eTag, element.getLastModified());
+        }
+
+        long length = -1;
+        if (element.getHeaderProfile() == HeaderProfile.JPEG) {
+            try {
+                ByteRange range = ExifThumbnail.find(new File(element.getLocalPath()));
+                if (range != null) {
+                    length = range.getLength();
+                }
+            } catch (IOException e) {
+                logger.warn("failed to read embedded thumbnail of {}. {}", element.getLocalPath(), e.getMessage());
+            }
         }
+        if (length < 0) {
+            length = thumbnailCache.lengthOf(element.getId() + eTag);
+        }
+
+        Response response;
+        if (length >= 0) {
+            response = newFixedLengthResponse(Response.Status.OK, Constants.MimeType.JPEG,
+                    new ByteArrayInputStream(EMPTY_BODY), length);
+        } else {
+            response = new UnknownLengthResponse(Response.Status.OK, Constants.MimeType.JPEG);
+        }
+        response.addHeader("Cache-Control", "no-cache");
+        addValidatorHeaders(response, eTag, element.getLastModified());
         return response;
     }
 
-    private Response getPartialResponse(String uri, String rangeHeader) throws IOException {
-        File file = getInputStream(uri);
-        String rangeVal = rangeHeader.trim().substring("bytes=".length());
-        long totalSize = file.length();
-        long start, end;
-        if (rangeVal.startsWith("-")) {
-            end = totalSize - 1;
-            start = totalSize - 1 - Long.parseLong(rangeVal.substring("-".length()));
-        } else {
-            String[] range = rangeVal.split("-");
-            start = Long.parseLong(range[0]);
-            end = range.length > 1 ? Long.parseLong(range[1]) : totalSize - 1;
+    private Response serveEmbeddedThumbnail(ContentElement element, String eTag) {
+        File file = new File(element.getLocalPath());
+        try {
+            ByteRange range = ExifThumbnail.find(file);
+            if (range == null) {
+                logger.debug("no embedded thumbnail: {}", file.getPath());
+                return null;
+            }
+            Response response = newFileResponse(Response.Status.OK, Constants.MimeType.JPEG,
+                    new FileRegionInputStream(file, range.getStart(), range.getLength()), range.getLength());
+            response.addHeader("Cache-Control", "no-cache");
+            addValidatorHeaders(response, eTag, element.getLastModified());
+            return response;
+        } catch (IOException e) {
+            logger.warn("failed to read embedded thumbnail of {}. {}", file.getPath(), e.getMessage());
+            return null;
         }
-        if (end > totalSize - 1) {
-            end = totalSize - 1;
+    }
+
+    private Response serveDummyResponse(ContentElement element, Map<String, String> headers) {
+        DummyAssets.Asset dummy = dummyOf(element);
+        if (dummy == dummyAssets.getProcessing()) {
+            this.videoConverter.push(element);
         }
-        if (start <= end) {
-            long contentLen = end - start + 1;
 
-            FileInputStream stream = new FileInputStream(file);
-            stream.skip(start);
+        logger.debug("response dummy: {}", dummy.getName());
 
-            Response response = newFixedLengthResponse(Response.Status.PARTIAL_CONTENT, getMimeType(uri), stream, contentLen);
-            response.addHeader("Accept-Ranges", "bytes");
-            response.addHeader("Cache-Control", "no-cache");
-            response.addHeader("transferMode.dlna.org", "Streaming");
-            response.addHeader("Content-Range", "bytes " + start + "-" + end + "/" + totalSize);
+        // the validator is of the asset being served, which switches as soon as the corrected file exists,
+        // while the element is updated only after the file has been written.
+        if (isNotModified(headers, dummy.getETag(), 0)) {
+            return newNotModifiedResponse(dummy.getETag(), 0);
+        }
 
-            if (Constants.MimeType.MP4.equals(getMimeType(uri))) {
-                response.addHeader("contentFeatures.dlna.org", "DLNA.ORG_PN=AVC_MP4_BL_CIF15_AAC_520;DLNA.ORG_OP=01;DLNA.ORG_CI=0");
-            }
+        Response response = newFixedLengthResponse(Response.Status.OK, Constants.MimeType.MP4, dummy.openStream(), dummy.getLength());
+        HeaderProfile.MP4.addTo(response);
+        addValidatorHeaders(response, dummy.getETag(), 0);
+
+        return response;
+    }
+
+    private Response serveDummyHead(ContentElement element, Map<String, String> headers) {
+        DummyAssets.Asset dummy = dummyOf(element);
+        if (isNotModified(headers, dummy.getETag(), 0)) {
+            return newNotModifiedResponse(dummy.getETag(), 0);
+        }
+        Response response = newFixedLengthResponse(Response.Status.OK, Constants.MimeType.MP4,
+                new ByteArrayInputStream(EMPTY_BODY), dummy.getLength());
+        HeaderProfile.MP4.addTo(response);
+        addValidatorHeaders(response, dummy.getETag(), 0);
+        return response;
+    }
+
+    private DummyAssets.Asset dummyOf(ContentElement element) {
+        return existsCorrectedData(element.getId()) ? dummyAssets.getDone() : dummyAssets.getProcessing();
+    }
+
+    // the size is taken from the opened file, since the length of the catalog may lag behind a file being written.
+    private Response getFullResponse(ContentElement element) throws IOException {
+        return getFullResponse(element, new FileRegionInputStream(new File(element.getLocalPath())));
+    }
+
+    private Response getFullResponse(ContentElement element, FileRegionInputStream stream) {
+        HeaderProfile profile = element.getHeaderProfile();
+        Response response = newFileResponse(Response.Status.OK, profile.getMimeType(), stream, stream.getFileSize());
+        profile.addTo(response);
+        return response;
+    }
+
+    private Response getPartialResponse(ContentElement element, String rangeHeader) throws IOException {
+        File file = new File(element.getLocalPath());
+        FileRegionInputStream stream = new FileRegionInputStream(file);
+        long totalSize = stream.getFileSize();
+        List<ByteRange> ranges = ByteRange.parse(rangeHeader, totalSize);
+        if (ranges == null) {
+            logger.debug("ignore malformed rangeHeader: {}", rangeHeader);
+            return getFullResponse(element, stream);
+        }
+        if (ranges.isEmpty()) {
+            logger.debug("unsatisfiable rangeHeader: {}", rangeHeader);
+            stream.close();
+            Response response = newFixedLengthResponse(Response.Status.RANGE_NOT_SATISFIABLE, Constants.MimeType.HTML, rangeHeader);
+            response.addHeader("Content-Range", "bytes */" + totalSize);
             return response;
+        }
 
+        HeaderProfile profile = element.getHeaderProfile();
+        Response response;
+        if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            stream.setRegion(range.getStart(), range.getLength());
+            response = newFileResponse(Response.Status.PARTIAL_CONTENT, profile.getMimeType(), stream, range.getLength());
+            response.addHeader("Content-Range", range.toContentRange(totalSize));
         } else {
-            logger.debug("start > end  rangeHeader: {}", rangeHeader);
-            return newFixedLengthResponse(Response.Status.RANGE_NOT_SATISFIABLE, Constants.MimeType.HTML, rangeHeader);
+            // the parts are read from streams of their own.
+            stream.close();
+            logger.debug("multipart ranges: {}", ranges);
+            MultipartByteRanges multipart = new MultipartByteRanges(file, profile.getMimeType(), ranges, totalSize);
+            response = newFixedLengthResponse(Response.Status.PARTIAL_CONTENT, multipart.getContentType(),
+                    multipart.openStream(), multipart.getContentLength());
         }
+        profile.addTo(response);
+        return response;
     }
 
-    private boolean isCorrectionOriginalContent(String uri) {
-        if (uri.indexOf(Constants.Content.ORIGINAL_VIDEO_ID_PREFIX) == 0) {
+    private Response newFileResponse(Response.IStatus status, String mimeType, FileRegionInputStream stream, long length) {
+        Socket socket = clientSocket.get();
+        return new FileRegionResponse(status, mimeType, stream, length, socket != null ? socket.getChannel() : null);
+    }
+
+    private void addValidatorHeaders(Response response, String eTag, long lastModified) {
+        response.addHeader("ETag", eTag);
+        if (lastModified > 0) {
+            response.addHeader("Last-Modified", createHttpDateFormat().format(new Date(lastModified)));
+        }
+    }
+
+    private Response newNotModifiedResponse(String eTag, long lastModified) {
+        Response response = newFixedLengthResponse(Response.Status.NOT_MODIFIED, null, new ByteArrayInputStream(EMPTY_BODY), 0);
+        response.addHeader("Cache-Control", "no-cache");
+        addValidatorHeaders(response, eTag, lastModified);
+        return response;
+    }
+
+    // If-None-Match takes precedence over If-Modified-Since. (RFC 7232)
+    private boolean isNotModified(Map<String, String> headers, String eTag, long lastModified) {
+        String ifNoneMatch = headers.get("if-none-match");
+        if (ifNoneMatch != null) {
+            return matchesETag(ifNoneMatch, eTag);
+        }
+        String ifModifiedSince = headers.get("if-modified-since");
+        if (ifModifiedSince != null && lastModified > 0) {
+            long since = parseHttpDate(ifModifiedSince);
+            return since >= 0 && lastModified / 1000 <= since / 1000;
+        }
+        return false;
+    }
+
+    // A range is served only if If-Range still matches the current representation.
+    private boolean matchesIfRange(Map<String, String> headers, String eTag, long lastModified) {
+        String ifRange = headers.get("if-range");
+        if (ifRange == null) {
             return true;
         }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(eTag);
+        }
+        long date = parseHttpDate(ifRange);
+        return date >= 0 && lastModified > 0 && lastModified / 1000 == date / 1000;
+    }
+
+    private boolean matchesETag(String headerValue, String eTag) {
+        for (String tag : headerValue.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*")) return true;
+            if (tag.startsWith("W/")) tag = tag.substring("W/".length());
+            if (tag.equals(eTag)) return true;
+        }
         return false;
     }
 
-    private File getInputStream(String uri) {
-        String filePath = getFilePath(uri);
-        logger.debug("getInputStream filePath: {}", filePath);
-        return new File(filePath);
+    private String thumbnailETag(ContentElement element) {
+        String eTag = element.getETag();
+        return eTag.substring(0, eTag.length() - 1) + "-thumb\"";
     }
 
-    private String getFilePath(String id) {
-        ContentElement element = contents.getContentElement(id);
-        if (element == null) {
-            logger.warn("failed to get file path. id [{}] is not found.", id);
-            return "";
+    private long parseHttpDate(String value) {
+        try {
+            return createHttpDateFormat().parse(value.trim()).getTime();
+        } catch (ParseException e) {
+            logger.debug("failed to parse date [{}].", value);
+            return -1;
         }
-        return element.getLocalPath();
     }
 
-    private String getMimeType(String id) {
-        ContentElement element = contents.getContentElement(id);
-        if (element == null) {
-            logger.warn("failed to get MimeType. id [{}] is not found.", id);
-            return Constants.MimeType.PLAINTEXT;
+    private SimpleDateFormat createHttpDateFormat() {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format;
+    }
+
+    private boolean isThumbnailRequest(Map<String, List<String>> params) {
+        List<String> types = params.get("type");
+        return types != null && types.contains("thumb");
+    }
+
+    private boolean isCorrectionOriginalContent(String uri) {
+        if (uri.indexOf(Constants.Content.ORIGINAL_VIDEO_ID_PREFIX) == 0) {
+            return true;
         }
-        return element.getMimeType();
+        return false;
     }
 
     private String getCorrectedFilePath(String originalId) {
@@ -266,4 +489,62 @@ public class HttpServer extends NanoHTTPD {
         return file.exists();
     }
 
+    // HEAD response whose body is not made, so that its length is not sent.
+    // NanoHTTPD copies a body in reads of 16 KiB through a heap buffer. the region of a file is rather transferred to
+    // the socket channel, which is sendfile(2), once NanoHTTPD has written the header.
+    private static class FileRegionResponse extends Response {
+        private final FileRegionInputStream region;
+        private final SocketChannel target;
+
+        private FileRegionResponse(IStatus status, String mimeType, FileRegionInputStream region, long length, SocketChannel target) {
+            super(status, mimeType, region, length);
+            this.region = region;
+            this.target = target;
+        }
+
+        // the region is sent as it is, so that the Content-Length is its length.
+        @Override
+        public void setGzipEncoding(boolean encodeAsGzip) {
+            super.setGzipEncoding(false);
+        }
+
+        @Override
+        protected void send(OutputStream outputStream) {
+            if (target == null) {
+                super.send(outputStream);
+                return;
+            }
+            // the copy of NanoHTTPD ends at once on the empty stream, after the header is flushed.
+            setData(new ByteArrayInputStream(EMPTY_BODY));
+            super.send(outputStream);
+            try {
+                long expected = region.remaining();
+                long transferred = region.transferTo(target);
+                if (transferred < expected) {
+                    logger.warn("file is shorter than its response. {}/{} bytes", transferred, expected);
+                    closeConnection(true);
+                }
+            } catch (IOException e) {
+                logger.error("failed to send the body. {}", e.getMessage());
+                closeConnection(true);
+            } finally {
+                try {
+                    region.close();
+                } catch (IOException e) {
+                    logger.warn("failed to close the file. {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static class UnknownLengthResponse extends Response {
+        private UnknownLengthResponse(Status status, String mimeType) {
+            super(status, mimeType, new ByteArrayInputStream(EMPTY_BODY), 0);
+        }
+
+        @Override
+        protected long sendContentLengthHeaderIfNotAlreadyPresent(PrintWriter pw, long defaultSize) {
+            return 0;
+        }
+    }
 }
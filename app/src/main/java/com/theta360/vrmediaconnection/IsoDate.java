@@ -0,0 +1,104 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Span of time [start, end) in epoch milliseconds denoted by a dc:date in ISO 8601, such as
+ * "2018-10-01T12:34:56+09:00", "2018-10-01T03:34:56Z" or "2018-10-01".
+ * A date spans its precision, so that "2018-10-01" is the whole day. A date without an offset is in the given
+ * time zone, which is that of the device for the capture dates.
+ */
+public class IsoDate {
+
+    private static final Pattern ISO_DATE = Pattern.compile(
+            "(\\d{4})-(\\d{2})-(\\d{2})(?:T(\\d{2}):(\\d{2})(?::(\\d{2})(?:\\.(\\d{1,3})\\d*)?)?(Z|[+-]\\d{2}:?\\d{2})?)?");
+
+    private final long start;
+    private final long end;
+
+    private IsoDate(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public long getStart() { return this.start; }
+
+    public long getEnd() { return this.end; }
+
+    @Override
+    public String toString() {
+        return start + "-" + end;
+    }
+
+    /**
+     * @return the date, or null if the value is not a date
+     */
+    public static IsoDate parse(String value) {
+        return parse(value, TimeZone.getDefault());
+    }
+
+    /**
+     * @param value dc:date
+     * @param zone time zone of a date without an offset
+     * @return the date, or null if the value is not a date
+     */
+    public static IsoDate parse(String value, TimeZone zone) {
+        if (value == null) return null;
+        Matcher matcher = ISO_DATE.matcher(value.trim());
+        if (!matcher.matches()) return null;
+
+        String offset = matcher.group(8);
+        if (offset != null) {
+            zone = TimeZone.getTimeZone(offset.equals("Z") ? "GMT" : "GMT" + offset);
+        }
+        Calendar calendar = Calendar.getInstance(zone, Locale.US);
+        calendar.clear();
+        calendar.setLenient(false);
+        calendar.set(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)) - 1,
+                Integer.parseInt(matcher.group(3)));
+        int unit = Calendar.DAY_OF_MONTH;
+        if (matcher.group(4) != null) {
+            calendar.set(Calendar.HOUR_OF_DAY, Integer.parseInt(matcher.group(4)));
+            calendar.set(Calendar.MINUTE, Integer.parseInt(matcher.group(5)));
+            unit = Calendar.MINUTE;
+        }
+        if (matcher.group(6) != null) {
+            calendar.set(Calendar.SECOND, Integer.parseInt(matcher.group(6)));
+            unit = Calendar.SECOND;
+        }
+        if (matcher.group(7) != null) {
+            String fraction = (matcher.group(7) + "00").substring(0, 3);
+            calendar.set(Calendar.MILLISECOND, Integer.parseInt(fraction));
+            unit = Calendar.MILLISECOND;
+        }
+
+        try {
+            long start = calendar.getTimeInMillis();
+            calendar.add(unit, 1);
+            return new IsoDate(start, calendar.getTimeInMillis());
+        } catch (IllegalArgumentException e) {
+            // a field out of its range, such as the 13th month
+            return null;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import org.fourthline.cling.model.Command;
+import org.fourthline.cling.model.DefaultServiceManager;
+import org.fourthline.cling.model.meta.LocalService;
+
+/**
+ * Service manager which executes the actions concurrently instead of one at a time under the lock of the service.
+ * Only for services whose actions never change the state of the service and are safe for concurrent calls,
+ * such as Browse and Search of {@link ContentDirectoryService}.
+ * The creation of the implementation and the reading of the state variables for eventing are still locked.
+ */
+public abstract class LockFreeServiceManager<T> extends DefaultServiceManager<T> {
+
+    private volatile T implementation;
+
+    public LockFreeServiceManager(LocalService<T> service, Class<T> serviceClass) {
+        super(service, serviceClass);
+    }
+
+    @Override
+    public T getImplementation() {
+        T implementation = this.implementation;
+        if (implementation == null) {
+            implementation = super.getImplementation();
+            this.implementation = implementation;
+        }
+        return implementation;
+    }
+
+    @Override
+    public void execute(Command<T> cmd) throws Exception {
+        cmd.execute(this);
+    }
+}
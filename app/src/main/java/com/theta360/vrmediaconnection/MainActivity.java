@@ -95,7 +95,10 @@ public class MainActivity extends PluginActivity {
     private String ipAddress;
 
     private Contents contents;
+    private DummyAssets dummyAssets;
     private VideoConverter videoConverter;
+    private ContentsCreator contentsCreator;
+    private ContentsSync contentsSync;
 
     private HttpServer httpServer;
 
@@ -168,12 +171,15 @@ public class MainActivity extends PluginActivity {
         this.textView.setText(this.ipAddress);
 
         this.contents = new Contents();
-        final ContentsCreator contentsCreator = new ContentsCreator(context, this.ipAddress, this.contents, this.isCorrectionMode);
-        setListener(contentsCreator);
-        contentsCreator.execute();
-
-        this.videoConverter = new VideoConverter(context, contentsCreator);
-        this.httpServer = new HttpServer(context, this.ipAddress, this.contents, this.videoConverter);
+        this.dummyAssets = new DummyAssets(context);
+        this.contentsCreator = new ContentsCreator(context, this.ipAddress, this.contents, this.dummyAssets, this.isCorrectionMode);
+        setListener(this.contentsCreator);
+        this.contentsCreator.execute();
+        this.contentsSync = new ContentsSync(this.contentsCreator);
+        this.contentsSync.start();
+
+        this.videoConverter = new VideoConverter(context, this.contentsCreator);
+        this.httpServer = new HttpServer(context, this.ipAddress, this.contents, this.videoConverter, this.dummyAssets);
         try {
             this.httpServer.start();
         } catch (IOException ex) {
@@ -208,6 +214,9 @@ public class MainActivity extends PluginActivity {
         }
         httpServer.stop();
         videoConverter.shutdown();
+        contentsSync.shutdown();
+        contentsCreator.saveSnapshot();
+        contentsCreator.shutdown();
     }
 
     protected LocalDevice createDevice()
@@ -225,8 +234,9 @@ public class MainActivity extends PluginActivity {
 
         LocalService contentDirectory = new AnnotationLocalServiceBinder()
                 .read(ContentDirectoryService.class);
+        // Browse and Search only read the catalog, so that requests of several players run concurrently.
         contentDirectory.setManager(
-                new DefaultServiceManager<ContentDirectoryService>(
+                new LockFreeServiceManager<ContentDirectoryService>(
                         contentDirectory, ContentDirectoryService.class) {
                     @Override
                     protected ContentDirectoryService createServiceInstance() throws Exception {
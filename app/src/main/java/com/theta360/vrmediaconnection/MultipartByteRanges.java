@@ -0,0 +1,104 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * multipart/byteranges body for a request with several ranges.
+ * The length is known up front, so the body can be sent as a fixed length response.
+ * The parts are streamed one by one from {@link FileRegionInputStream}s, so only one file is open at a time.
+ */
+public class MultipartByteRanges {
+
+    private final File file;
+    private final List<ByteRange> ranges;
+    private final String boundary;
+    private final byte[][] partHeaders;
+    private final byte[] closeDelimiter;
+    private final long contentLength;
+
+    public MultipartByteRanges(File file, String mimeType, List<ByteRange> ranges, long totalSize) {
+        this.file = file;
+        this.ranges = ranges;
+        this.boundary = UUID.randomUUID().toString().replace("-", "");
+        this.partHeaders = new byte[ranges.size()][];
+
+        long length = 0;
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteRange range = ranges.get(i);
+            String header = (i == 0 ? "" : "\r\n") +
+                    "--" + boundary + "\r\n" +
+                    "Content-Type: " + mimeType + "\r\n" +
+                    "Content-Range: " + range.toContentRange(totalSize) + "\r\n" +
+                    "\r\n";
+            partHeaders[i] = header.getBytes(StandardCharsets.US_ASCII);
+            length += partHeaders[i].length + range.getLength();
+        }
+        this.closeDelimiter = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        this.contentLength = length + closeDelimiter.length;
+    }
+
+    public String getContentType() {
+        return "multipart/byteranges; boundary=" + boundary;
+    }
+
+    public long getContentLength() {
+        return this.contentLength;
+    }
+
+    public InputStream openStream() {
+        return new SequenceInputStream(new Enumeration<InputStream>() {
+            // even indices are part headers, odd ones the file regions, the last one the close delimiter
+            private int index = 0;
+
+            @Override
+            public boolean hasMoreElements() {
+                return index <= ranges.size() * 2;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                if (!hasMoreElements()) {
+                    throw new NoSuchElementException();
+                }
+                int i = index++;
+                if (i == ranges.size() * 2) {
+                    return new ByteArrayInputStream(closeDelimiter);
+                }
+                if (i % 2 == 0) {
+                    return new ByteArrayInputStream(partHeaders[i / 2]);
+                }
+                ByteRange range = ranges.get(i / 2);
+                try {
+                    return new FileRegionInputStream(file, range.getStart(), range.getLength());
+                } catch (IOException e) {
+                    throw new IllegalStateException("failed to open " + file.getPath(), e);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import com.theta360.vrmediaconnection.network.HttpConnector;
+import com.theta360.vrmediaconnection.network.HttpListListener;
+import com.theta360.vrmediaconnection.network.ImageInfo;
+
+import java.util.Map;
+
+/**
+ * Lists the files by camera.listFiles of the OSC API.
+ * The pages received before a failure have been passed to the listener, so that this source is the last resort.
+ */
+public class OscCatalogSource implements CatalogSource {
+
+    private HttpConnector connector;
+
+    public OscCatalogSource(HttpConnector connector) {
+        this.connector = connector;
+    }
+
+    @Override
+    public int list(Map<String, ImageInfo> listed, HttpListListener listener) {
+        return connector.getList(listener);
+    }
+}
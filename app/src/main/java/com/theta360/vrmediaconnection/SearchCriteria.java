@@ -0,0 +1,262 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Parsed SearchCriteria of the ContentDirectory service, such as
+ * {@code upnp:class derivedfrom "object.item.videoItem" and dc:title contains "R0010"}.
+ * "and" binds tighter than "or". The criteria is evaluated against a {@link SearchIndex}.
+ */
+public final class SearchCriteria {
+
+    public static final String ALL = "*";
+
+    private final Expression expression;
+
+    private SearchCriteria(Expression expression) {
+        this.expression = expression;
+    }
+
+    /**
+     * Parse the criteria.
+     *
+     * @param criteria value of the SearchCriteria argument
+     * @return parsed criteria
+     * @throws IllegalArgumentException if the criteria is malformed
+     */
+    public static SearchCriteria parse(String criteria) {
+        String value = criteria == null ? "" : criteria.trim();
+        if (value.isEmpty() || value.equals(ALL)) {
+            return new SearchCriteria(null);
+        }
+        Parser parser = new Parser(tokenize(value));
+        Expression expression = parser.parseOr();
+        if (parser.hasNext()) {
+            throw new IllegalArgumentException("unexpected token: " + parser.peek());
+        }
+        return new SearchCriteria(expression);
+    }
+
+    /**
+     * @return ordinals of the matching elements
+     * @throws IllegalArgumentException if the index does not support an operator of the criteria
+     */
+    public BitSet evaluate(SearchIndex index) {
+        if (expression == null) {
+            return index.all();
+        }
+        return expression.evaluate(index);
+    }
+
+    private interface Expression {
+        BitSet evaluate(SearchIndex index);
+    }
+
+    private static class And implements Expression {
+        private final Expression left;
+        private final Expression right;
+
+        And(Expression left, Expression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public BitSet evaluate(SearchIndex index) {
+            BitSet result = left.evaluate(index);
+            if (!result.isEmpty()) {
+                result.and(right.evaluate(index));
+            }
+            return result;
+        }
+    }
+
+    private static class Or implements Expression {
+        private final Expression left;
+        private final Expression right;
+
+        Or(Expression left, Expression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public BitSet evaluate(SearchIndex index) {
+            BitSet result = left.evaluate(index);
+            result.or(right.evaluate(index));
+            return result;
+        }
+    }
+
+    private static class Relation implements Expression {
+        private final String property;
+        private final String operator;
+        private final String value;
+
+        Relation(String property, String operator, String value) {
+            this.property = property;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        @Override
+        public BitSet evaluate(SearchIndex index) {
+            return index.match(property, operator, value);
+        }
+    }
+
+    private static class Parser {
+        private final List<Token> tokens;
+        private int position;
+
+        Parser(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        boolean hasNext() {
+            return position < tokens.size();
+        }
+
+        Token peek() {
+            return hasNext() ? tokens.get(position) : null;
+        }
+
+        Token next() {
+            if (!hasNext()) {
+                throw new IllegalArgumentException("unexpected end of criteria.");
+            }
+            return tokens.get(position++);
+        }
+
+        Expression parseOr() {
+            Expression expression = parseAnd();
+            while (isKeyword(peek(), "or")) {
+                next();
+                expression = new Or(expression, parseAnd());
+            }
+            return expression;
+        }
+
+        Expression parseAnd() {
+            Expression expression = parsePrimary();
+            while (isKeyword(peek(), "and")) {
+                next();
+                expression = new And(expression, parsePrimary());
+            }
+            return expression;
+        }
+
+        Expression parsePrimary() {
+            Token token = next();
+            if (token.kind == Token.OPEN) {
+                Expression expression = parseOr();
+                if (next().kind != Token.CLOSE) {
+                    throw new IllegalArgumentException("')' is expected.");
+                }
+                return expression;
+            }
+            if (token.kind != Token.WORD) {
+                throw new IllegalArgumentException("property is expected: " + token);
+            }
+            String property = token.text;
+
+            Token operator = next();
+            if (operator.kind != Token.WORD) {
+                throw new IllegalArgumentException("operator is expected: " + operator);
+            }
+
+            Token value = next();
+            if (operator.text.equals(SearchIndex.EXISTS)) {
+                if (value.kind != Token.WORD || !(value.text.equals("true") || value.text.equals("false"))) {
+                    throw new IllegalArgumentException("true or false is expected: " + value);
+                }
+            } else if (value.kind != Token.QUOTED) {
+                throw new IllegalArgumentException("quoted value is expected: " + value);
+            }
+            return new Relation(property, operator.text, value.text);
+        }
+
+        private static boolean isKeyword(Token token, String keyword) {
+            return token != null && token.kind == Token.WORD && token.text.equalsIgnoreCase(keyword);
+        }
+    }
+
+    private static class Token {
+        static final int WORD = 0;
+        static final int QUOTED = 1;
+        static final int OPEN = 2;
+        static final int CLOSE = 3;
+
+        final int kind;
+        final String text;
+
+        Token(int kind, String text) {
+            this.kind = kind;
+            this.text = text;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    private static List<Token> tokenize(String criteria) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < criteria.length()) {
+            char c = criteria.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(') {
+                tokens.add(new Token(Token.OPEN, "("));
+                i++;
+            } else if (c == ')') {
+                tokens.add(new Token(Token.CLOSE, ")"));
+                i++;
+            } else if (c == '"') {
+                StringBuilder sb = new StringBuilder();
+                i++;
+                while (true) {
+                    if (i >= criteria.length()) {
+                        throw new IllegalArgumentException("unterminated quoted value.");
+                    }
+                    char q = criteria.charAt(i++);
+                    if (q == '"') break;
+                    if (q == '\\' && i < criteria.length()) {
+                        q = criteria.charAt(i++);
+                    }
+                    sb.append(q);
+                }
+                tokens.add(new Token(Token.QUOTED, sb.toString()));
+            } else {
+                int start = i;
+                while (i < criteria.length()) {
+                    char w = criteria.charAt(i);
+                    if (Character.isWhitespace(w) || w == '(' || w == ')' || w == '"') break;
+                    i++;
+                }
+                tokens.add(new Token(Token.WORD, criteria.substring(start, i)));
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,385 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory index of the catalog for Search.
+ * Each element gets an ordinal in the order of insertion, and every posting list is a BitSet of ordinals,
+ * so that "and", "or" and the negations are plain bit operations.
+ * Titles are indexed by their trigrams; a contains query only verifies the candidates which have all of its trigrams.
+ * The ordinals are renumbered when most of them belong to removed elements, so that a criteria has to be
+ * evaluated and its elements got under the lock of the index, which {@link #search} does.
+ */
+public class SearchIndex {
+
+    public static final String CLASS = "upnp:class";
+    public static final String TITLE = "dc:title";
+    public static final String DATE = "dc:date";
+    public static final String RESOLUTION = "res@resolution";
+
+    public static final String EQUAL = "=";
+    public static final String NOT_EQUAL = "!=";
+    public static final String LESS = "<";
+    public static final String LESS_EQUAL = "<=";
+    public static final String GREATER = ">";
+    public static final String GREATER_EQUAL = ">=";
+    public static final String CONTAINS = "contains";
+    public static final String DOES_NOT_CONTAIN = "doesNotContain";
+    public static final String STARTS_WITH = "startsWith";
+    public static final String DERIVED_FROM = "derivedfrom";
+    public static final String EXISTS = "exists";
+
+    public static final List<String> CAPABILITIES = Arrays.asList(CLASS, TITLE, DATE, RESOLUTION);
+
+    private static final int GRAM = 3;
+    // the ordinals are renumbered when less than half of them are used
+    private static final int MIN_COMPACTION_SIZE = 256;
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final BitSet all = new BitSet();
+    private final BitSet withDate = new BitSet();
+    private final BitSet withResolution = new BitSet();
+    private final Map<String, BitSet> classes = new HashMap<>();
+    private final Map<String, BitSet> trigrams = new HashMap<>();
+    private final Map<String, BitSet> resolutions = new HashMap<>();
+    // by the epoch milliseconds of the dates
+    private final TreeMap<Long, BitSet> dates = new TreeMap<>();
+
+    public synchronized void add(ContentElement element) {
+        if (ordinals.containsKey(element.getId())) {
+            return;
+        }
+
+        index(new Entry(element));
+    }
+
+    private void index(Entry entry) {
+        int ordinal = entries.size();
+        entries.add(entry);
+        ordinals.put(entry.element.getId(), ordinal);
+        all.set(ordinal);
+
+        if (entry.clazz != null) {
+            posting(classes, entry.clazz).set(ordinal);
+        }
+        for (String gram : grams(entry.title)) {
+            posting(trigrams, gram).set(ordinal);
+        }
+        if (entry.resolution != null) {
+            posting(resolutions, entry.resolution).set(ordinal);
+            withResolution.set(ordinal);
+        }
+        if (entry.date != null) {
+            withDate.set(ordinal);
+        }
+        if (entry.dateTime != Long.MIN_VALUE) {
+            posting(dates, entry.dateTime).set(ordinal);
+        }
+    }
+
+    public synchronized void remove(String id) {
+        Integer ordinal = ordinals.remove(id);
+        if (ordinal == null) {
+            return;
+        }
+
+        Entry entry = entries.set(ordinal, null);
+        all.clear(ordinal);
+        withDate.clear(ordinal);
+        withResolution.clear(ordinal);
+        if (entry.clazz != null) {
+            clear(classes, entry.clazz, ordinal);
+        }
+        for (String gram : grams(entry.title)) {
+            clear(trigrams, gram, ordinal);
+        }
+        if (entry.resolution != null) {
+            clear(resolutions, entry.resolution, ordinal);
+        }
+        if (entry.dateTime != Long.MIN_VALUE) {
+            clear(dates, entry.dateTime, ordinal);
+        }
+        if (entries.size() >= MIN_COMPACTION_SIZE && ordinals.size() * 2 < entries.size()) {
+            compact();
+        }
+    }
+
+    // the remaining entries are indexed again in their order, so that the removed ones are dropped.
+    private void compact() {
+        List<Entry> remaining = new ArrayList<>(ordinals.size());
+        for (Entry entry : entries) {
+            if (entry != null) {
+                remaining.add(entry);
+            }
+        }
+        entries.clear();
+        ordinals.clear();
+        all.clear();
+        withDate.clear();
+        withResolution.clear();
+        classes.clear();
+        trigrams.clear();
+        resolutions.clear();
+        dates.clear();
+        for (Entry entry : remaining) {
+            index(entry);
+        }
+    }
+
+    /**
+     * @return elements matching the criteria, in the order of insertion
+     * @throws IllegalArgumentException if the criteria has an unsupported property or operator
+     */
+    public synchronized List<ContentElement> search(SearchCriteria criteria) {
+        // the lock is held over the evaluation, so that the ordinals are not renumbered in between.
+        return get(criteria.evaluate(this));
+    }
+
+    public synchronized BitSet all() {
+        return (BitSet) all.clone();
+    }
+
+    /**
+     * @return elements of the ordinals, in the order of insertion
+     */
+    public synchronized List<ContentElement> get(BitSet ordinals) {
+        List<ContentElement> result = new ArrayList<>(ordinals.cardinality());
+        for (int i = ordinals.nextSetBit(0); i >= 0; i = ordinals.nextSetBit(i + 1)) {
+            Entry entry = i < entries.size() ? entries.get(i) : null;
+            if (entry != null) {
+                result.add(entry.element);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return ordinals of the elements matching the relation. The returned BitSet is owned by the caller.
+     * @throws IllegalArgumentException if the property or the operator is not supported
+     */
+    public synchronized BitSet match(String property, String operator, String value) {
+        if (operator.equals(EXISTS)) {
+            BitSet having = having(property);
+            if (Boolean.parseBoolean(value)) {
+                return having;
+            }
+            BitSet result = (BitSet) all.clone();
+            result.andNot(having);
+            return result;
+        }
+        if (operator.equals(NOT_EQUAL)) {
+            return negate(property, match(property, EQUAL, value));
+        }
+        if (operator.equals(DOES_NOT_CONTAIN)) {
+            return negate(property, match(property, CONTAINS, value));
+        }
+
+        switch (property) {
+            case CLASS:
+                return matchClass(operator, value);
+            case TITLE:
+                return matchTitle(operator, value.toLowerCase(Locale.US));
+            case DATE:
+                return matchDate(operator, value);
+            case RESOLUTION:
+                if (operator.equals(EQUAL)) {
+                    return copy(resolutions.get(value));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported property: " + property);
+        }
+        throw new IllegalArgumentException("unsupported operator: " + property + " " + operator);
+    }
+
+    private BitSet matchClass(String operator, String value) {
+        switch (operator) {
+            case EQUAL:
+                return copy(classes.get(value));
+            case DERIVED_FROM: {
+                // there are only a few classes, so they are simply compared.
+                BitSet result = new BitSet();
+                for (Map.Entry<String, BitSet> clazz : classes.entrySet()) {
+                    if (clazz.getKey().equals(value) || clazz.getKey().startsWith(value + ".")) {
+                        result.or(clazz.getValue());
+                    }
+                }
+                return result;
+            }
+            default:
+                throw new IllegalArgumentException("unsupported operator: " + CLASS + " " + operator);
+        }
+    }
+
+    private BitSet matchTitle(String operator, String value) {
+        BitSet candidates;
+        if (value.length() < GRAM) {
+            candidates = (BitSet) all.clone();
+        } else {
+            candidates = null;
+            for (String gram : grams(value)) {
+                BitSet posting = trigrams.get(gram);
+                if (posting == null) {
+                    return new BitSet();
+                }
+                if (candidates == null) {
+                    candidates = (BitSet) posting.clone();
+                } else {
+                    candidates.and(posting);
+                }
+            }
+        }
+
+        BitSet result = new BitSet();
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            String title = entries.get(i).title;
+            boolean matched;
+            switch (operator) {
+                case EQUAL:
+                    matched = title.equals(value);
+                    break;
+                case CONTAINS:
+                    matched = title.contains(value);
+                    break;
+                case STARTS_WITH:
+                    matched = title.startsWith(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unsupported operator: " + TITLE + " " + operator);
+            }
+            if (matched) {
+                result.set(i);
+            }
+        }
+        return result;
+    }
+
+    // dates are compared as instants, so that dates of different offsets are in order.
+    // the value is the span of its precision; "= 2018-10-01" matches the whole day and "> 2018-10-01" the days after it.
+    private BitSet matchDate(String operator, String value) {
+        IsoDate date = IsoDate.parse(value);
+        if (date == null) {
+            throw new IllegalArgumentException("invalid date: " + DATE + " " + operator + " " + value);
+        }
+        NavigableMap<Long, BitSet> range;
+        switch (operator) {
+            case EQUAL:
+                range = dates.subMap(date.getStart(), true, date.getEnd(), false);
+                break;
+            case LESS:
+                range = dates.headMap(date.getStart(), false);
+                break;
+            case LESS_EQUAL:
+                range = dates.headMap(date.getEnd(), false);
+                break;
+            case GREATER:
+                range = dates.tailMap(date.getEnd(), true);
+                break;
+            case GREATER_EQUAL:
+                range = dates.tailMap(date.getStart(), true);
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported operator: " + DATE + " " + operator);
+        }
+        BitSet result = new BitSet();
+        for (BitSet posting : range.values()) {
+            result.or(posting);
+        }
+        return result;
+    }
+
+    private BitSet having(String property) {
+        switch (property) {
+            case CLASS:
+            case TITLE:
+                return (BitSet) all.clone();
+            case DATE:
+                return (BitSet) withDate.clone();
+            case RESOLUTION:
+                return (BitSet) withResolution.clone();
+            default:
+                throw new IllegalArgumentException("unsupported property: " + property);
+        }
+    }
+
+    // the negation matches only the elements which have the property.
+    private BitSet negate(String property, BitSet matched) {
+        BitSet result = having(property);
+        result.andNot(matched);
+        return result;
+    }
+
+    private static BitSet copy(BitSet posting) {
+        return posting == null ? new BitSet() : (BitSet) posting.clone();
+    }
+
+    private static <K> BitSet posting(Map<K, BitSet> map, K key) {
+        BitSet posting = map.get(key);
+        if (posting == null) {
+            posting = new BitSet();
+            map.put(key, posting);
+        }
+        return posting;
+    }
+
+    private static <K> void clear(Map<K, BitSet> map, K key, int ordinal) {
+        BitSet posting = map.get(key);
+        if (posting == null) return;
+        posting.clear(ordinal);
+        if (posting.isEmpty()) {
+            map.remove(key);
+        }
+    }
+
+    private static List<String> grams(String text) {
+        List<String> grams = new ArrayList<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private static class Entry {
+        private final ContentElement element;
+        private final String clazz;
+        private final String title;
+        private final String resolution;
+        private final String date;
+        private final long dateTime;
+
+        private Entry(ContentElement element) {
+            // read from the element, so that the DIDL object is not built for the index.
+            this.element = element;
+            this.clazz = element.getClazz();
+            this.title = element.getDisplayTitle() != null ? element.getDisplayTitle().toLowerCase(Locale.US) : "";
+            this.resolution = element.getResolution();
+            this.date = element.getDate();
+            this.dateTime = element.getDateTime();
+        }
+    }
+}
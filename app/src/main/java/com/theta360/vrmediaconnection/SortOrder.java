@@ -0,0 +1,115 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import org.fourthline.cling.support.model.SortCriterion;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Order of the children given by the SortCriteria of Browse or Search, such as "+dc:title,-dc:date".
+ * Elements which are equal by all the criteria are ordered by their ids, so that the order is total.
+ */
+public class SortOrder implements Comparator<ContentElement> {
+
+    public static final String TITLE = "dc:title";
+    public static final String DATE = "dc:date";
+    public static final String RESOLUTION = "res@resolution";
+
+    public static final List<String> CAPABILITIES = Arrays.asList(TITLE, DATE, RESOLUTION);
+
+    private final String[] properties;
+    private final boolean[] ascending;
+    private final String key;
+
+    private SortOrder(String[] properties, boolean[] ascending, String key) {
+        this.properties = properties;
+        this.ascending = ascending;
+        this.key = key;
+    }
+
+    /**
+     * @param orderby sort criteria
+     * @return the order, or null if orderby is empty
+     * @throws IllegalArgumentException if a property is not sortable
+     */
+    public static SortOrder of(SortCriterion[] orderby) {
+        if (orderby == null || orderby.length == 0) {
+            return null;
+        }
+
+        String[] properties = new String[orderby.length];
+        boolean[] ascending = new boolean[orderby.length];
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < orderby.length; i++) {
+            String property = orderby[i].getPropertyName();
+            if (!CAPABILITIES.contains(property)) {
+                throw new IllegalArgumentException("unsupported sort property: " + property);
+            }
+            properties[i] = property;
+            ascending[i] = orderby[i].isAscending();
+            if (i > 0) key.append(',');
+            key.append(ascending[i] ? '+' : '-').append(property);
+        }
+        return new SortOrder(properties, ascending, key.toString());
+    }
+
+    // identifies the order; equal orders have the same key.
+    public String getKey() { return this.key; }
+
+    @Override
+    public int compare(ContentElement a, ContentElement b) {
+        for (int i = 0; i < properties.length; i++) {
+            int result;
+            switch (properties[i]) {
+                case TITLE:
+                    result = compareNullable(a.getDisplayTitle(), b.getDisplayTitle());
+                    break;
+                case DATE:
+                    // compared as instants, so that the offsets of the dates do not matter; unknown is the smallest.
+                    result = Long.compare(a.getDateTime(), b.getDateTime());
+                    break;
+                case RESOLUTION:
+                    // the resolution of the res, which Search matches as well; unknown is the smallest.
+                    result = Long.compare(a.getResolutionArea(), b.getResolutionArea());
+                    break;
+                default:
+                    result = 0;
+                    break;
+            }
+            if (result != 0) {
+                return ascending[i] ? result : -result;
+            }
+        }
+        return a.getId().compareTo(b.getId());
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+
+    // null is the smallest value.
+    private static int compareNullable(String a, String b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        return String.CASE_INSENSITIVE_ORDER.compare(a, b);
+    }
+}
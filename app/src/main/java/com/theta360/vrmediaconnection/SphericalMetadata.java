@@ -0,0 +1,166 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import com.theta360.vrmediaconnection.network.ImageInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Finds the projection of a video from the spherical video metadata in the movie header of an MP4 file.
+ * The camera writes the metadata only to the stitched videos, so that a video without it is dual fisheye.
+ * Only the headers of the boxes which can hold the metadata are read; the sample tables are skipped.
+ */
+public final class SphericalMetadata {
+
+    private static final int BOX_HEADER_SIZE = 8;
+    private static final int LARGE_BOX_HEADER_SIZE = 16;
+    // version, flags and entry count of stsd
+    private static final int STSD_HEADER_SIZE = 8;
+    // fields of a visual sample entry before its child boxes
+    private static final int VISUAL_SAMPLE_ENTRY_SIZE = 78;
+    private static final int UUID_SIZE = 16;
+    private static final int MAX_XML_SIZE = 64 * 1024;
+
+    private static final int TYPE_MOOV = 0x6D6F6F76; // "moov"
+    private static final int TYPE_TRAK = 0x7472616B; // "trak"
+    private static final int TYPE_MDIA = 0x6D646961; // "mdia"
+    private static final int TYPE_MINF = 0x6D696E66; // "minf"
+    private static final int TYPE_STBL = 0x7374626C; // "stbl"
+    private static final int TYPE_STSD = 0x73747364; // "stsd"
+    private static final int TYPE_AVC1 = 0x61766331; // "avc1"
+    private static final int TYPE_HVC1 = 0x68766331; // "hvc1"
+    private static final int TYPE_HEV1 = 0x68657631; // "hev1"
+    private static final int TYPE_UUID = 0x75756964; // "uuid"
+    private static final int TYPE_SV3D = 0x73763364; // "sv3d"
+    private static final int TYPE_PROJ = 0x70726F6A; // "proj"
+    private static final int TYPE_EQUI = 0x65717569; // "equi"
+
+    // uuid box of the XML of the spherical video V1 metadata
+    private static final byte[] SPHERICAL_V1_UUID = {
+            (byte) 0xFF, (byte) 0xCC, (byte) 0x82, (byte) 0x63, (byte) 0xF8, (byte) 0x55, (byte) 0x4A, (byte) 0x93,
+            (byte) 0x88, (byte) 0x14, (byte) 0x58, (byte) 0x7A, (byte) 0x02, (byte) 0x52, (byte) 0x1F, (byte) 0xDD};
+    private static final String V1_EQUIRECTANGULAR = "equirectangular";
+
+    private SphericalMetadata() {}
+
+    /**
+     * @param file MP4 file
+     * @return projection type of ImageInfo, or null if the movie header is not found, such as in a video being recorded
+     * @throws IOException if the file cannot be read
+     */
+    public static String projectionOf(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long length = raf.length();
+            long position = 0;
+
+            while (position + BOX_HEADER_SIZE <= length) {
+                raf.seek(position);
+                long size = raf.readInt() & 0xFFFFFFFFL;
+                int type = raf.readInt();
+                int headerSize = BOX_HEADER_SIZE;
+                if (size == 1) {
+                    size = raf.readLong();
+                    headerSize = LARGE_BOX_HEADER_SIZE;
+                } else if (size == 0) {
+                    // the last box extends to the end of the file
+                    size = length - position;
+                }
+                if (size < headerSize || position + size > length) {
+                    return null;
+                }
+
+                if (type == TYPE_MOOV) {
+                    return isSpherical(raf, position + headerSize, position + size)
+                            ? ImageInfo.PROJECTION_TYPE_EQUI : ImageInfo.PROJECTION_TYPE_DUALFISH;
+                }
+                position += size;
+            }
+            return null;
+        }
+    }
+
+    // whether the boxes in the region have the metadata of the equirectangular projection
+    private static boolean isSpherical(RandomAccessFile raf, long start, long end) throws IOException {
+        long position = start;
+        while (position + BOX_HEADER_SIZE <= end) {
+            raf.seek(position);
+            long size = raf.readInt() & 0xFFFFFFFFL;
+            int type = raf.readInt();
+            int headerSize = BOX_HEADER_SIZE;
+            if (size == 1) {
+                size = raf.readLong();
+                headerSize = LARGE_BOX_HEADER_SIZE;
+            } else if (size == 0) {
+                size = end - position;
+            }
+            if (size < headerSize || position + size > end) {
+                return false;
+            }
+            long body = position + headerSize;
+            long boxEnd = position + size;
+
+            switch (type) {
+                case TYPE_TRAK:
+                case TYPE_MDIA:
+                case TYPE_MINF:
+                case TYPE_STBL:
+                case TYPE_SV3D:
+                case TYPE_PROJ:
+                    if (isSpherical(raf, body, boxEnd)) return true;
+                    break;
+                case TYPE_STSD:
+                    if (isSpherical(raf, body + STSD_HEADER_SIZE, boxEnd)) return true;
+                    break;
+                case TYPE_AVC1:
+                case TYPE_HVC1:
+                case TYPE_HEV1:
+                    if (isSpherical(raf, body + VISUAL_SAMPLE_ENTRY_SIZE, boxEnd)) return true;
+                    break;
+                case TYPE_UUID:
+                    if (isSphericalV1(raf, body, boxEnd)) return true;
+                    break;
+                case TYPE_EQUI:
+                    // V2 metadata: sv3d/proj/equi
+                    return true;
+                default:
+                    break;
+            }
+            position = boxEnd;
+        }
+        return false;
+    }
+
+    private static boolean isSphericalV1(RandomAccessFile raf, long body, long end) throws IOException {
+        if (end - body < UUID_SIZE || end - body - UUID_SIZE > MAX_XML_SIZE) {
+            return false;
+        }
+        raf.seek(body);
+        byte[] uuid = new byte[UUID_SIZE];
+        raf.readFully(uuid);
+        if (!Arrays.equals(uuid, SPHERICAL_V1_UUID)) {
+            return false;
+        }
+        byte[] xml = new byte[(int) (end - body - UUID_SIZE)];
+        raf.readFully(xml);
+        return new String(xml, StandardCharsets.UTF_8).contains(V1_EQUIRECTANGULAR);
+    }
+}
@@ -0,0 +1,269 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import android.util.LruCache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of encoded thumbnails.
+ * The first tier is a bounded LRU in memory, the second one a directory which survives restarts of the plugin.
+ * The key should contain the fingerprint of the file, so that a changed file never hits a stale thumbnail.
+ * Concurrent misses of the same key wait for one load instead of loading it each.
+ */
+public class ThumbnailCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThumbnailCache.class);
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final File dir;
+    private final long maxDiskBytes;
+    private final AtomicLong diskBytes = new AtomicLong();
+    private final LruCache<String, byte[]> memory;
+    private final ConcurrentMap<String, FutureTask<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong joins = new AtomicLong();
+    private final AtomicLong memoryEvictions = new AtomicLong();
+    private final AtomicLong diskEvictions = new AtomicLong();
+
+    public ThumbnailCache(File dir, int maxMemoryBytes, long maxDiskBytes) {
+        this.dir = dir;
+        this.maxDiskBytes = maxDiskBytes;
+        this.memory = new LruCache<String, byte[]>(maxMemoryBytes) {
+            @Override
+            protected int sizeOf(String key, byte[] value) {
+                return value.length;
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, byte[] oldValue, byte[] newValue) {
+                if (evicted) memoryEvictions.incrementAndGet();
+            }
+        };
+
+        if (!dir.exists() && !dir.mkdirs()) {
+            logger.error("failed to mkdirs: {}", dir.getPath());
+        }
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                // a thumbnail whose write was interrupted by the end of the plugin
+                if (file.getName().endsWith(TMP_SUFFIX)) {
+                    if (!file.delete()) {
+                        logger.warn("failed to delete {}.", file.getPath());
+                    }
+                    continue;
+                }
+                diskBytes.addAndGet(file.length());
+            }
+        }
+        logger.debug("thumbnail cache dir:{} diskBytes:{}", dir.getPath(), diskBytes.get());
+    }
+
+    public byte[] get(String key) {
+        byte[] data = memory.get(key);
+        if (data != null) {
+            memoryHits.incrementAndGet();
+            return data;
+        }
+
+        File file = fileOf(key);
+        if (file.exists()) {
+            try {
+                data = readFile(file);
+                // touch the file so that the trimming of the directory keeps recently used thumbnails
+                file.setLastModified(System.currentTimeMillis());
+                memory.put(key, data);
+                diskHits.incrementAndGet();
+                return data;
+            } catch (IOException e) {
+                logger.warn("failed to read cached thumbnail {}. {}", file.getPath(), e.getMessage());
+            }
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Size of the cached thumbnail, which is neither read nor counted as a hit or a miss.
+     *
+     * @return size in bytes, or -1 if the thumbnail is not cached
+     */
+    public long lengthOf(String key) {
+        byte[] data = memory.get(key);
+        if (data != null) {
+            return data.length;
+        }
+        File file = fileOf(key);
+        return file.isFile() ? file.length() : -1;
+    }
+
+    /**
+     * Get the thumbnail, loading it on a miss.
+     * If another thread is already loading the same key, wait for its result instead of loading it again.
+     *
+     * @param key key of the thumbnail
+     * @param loader loads the encoded thumbnail, or returns null if it cannot be created
+     * @return encoded thumbnail, or null if it cannot be created
+     */
+    public byte[] get(final String key, final Callable<byte[]> loader) throws InterruptedException, ExecutionException {
+        byte[] data = get(key);
+        if (data != null) {
+            return data;
+        }
+
+        FutureTask<byte[]> task = new FutureTask<>(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                // the previous load may have finished between the miss and the registration of this task.
+                byte[] data = memory.get(key);
+                if (data != null) {
+                    return data;
+                }
+                data = loader.call();
+                if (data != null) {
+                    put(key, data);
+                }
+                return data;
+            }
+        });
+        FutureTask<byte[]> running = inFlight.putIfAbsent(key, task);
+        if (running == null) {
+            try {
+                task.run();
+            } finally {
+                inFlight.remove(key, task);
+            }
+            return task.get();
+        }
+        joins.incrementAndGet();
+        return running.get();
+    }
+
+    public void put(String key, byte[] data) {
+        memory.put(key, data);
+
+        File file = fileOf(key);
+        File tmp = new File(dir, file.getName() + TMP_SUFFIX);
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            out.write(data);
+        } catch (IOException e) {
+            logger.warn("failed to write cached thumbnail {}. {}", tmp.getPath(), e.getMessage());
+            tmp.delete();
+            return;
+        }
+        long replaced = file.length();
+        if (!tmp.renameTo(file)) {
+            logger.warn("failed to rename {}.", tmp.getPath());
+            tmp.delete();
+            return;
+        }
+        if (diskBytes.addAndGet(data.length - replaced) > maxDiskBytes) {
+            trimDisk();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "memoryHits=" + memoryHits.get() +
+                ", diskHits=" + diskHits.get() +
+                ", misses=" + misses.get() +
+                ", joins=" + joins.get() +
+                ", memoryEvictions=" + memoryEvictions.get() +
+                ", diskEvictions=" + diskEvictions.get() +
+                ", memoryBytes=" + memory.size() +
+                ", diskBytes=" + diskBytes.get();
+    }
+
+    private synchronized void trimDisk() {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        // trim to 3/4 of the limit, so that the next puts do not trim again at once.
+        long target = maxDiskBytes / 4 * 3;
+        for (File file : files) {
+            if (diskBytes.get() <= target) break;
+            long length = file.length();
+            if (file.delete()) {
+                diskBytes.addAndGet(-length);
+                diskEvictions.incrementAndGet();
+            }
+        }
+        logger.debug("trimmed thumbnail cache: {}", this);
+    }
+
+    private File fileOf(String key) {
+        return new File(dir, hash(key) + ".jpg");
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-1 is not available.", e);
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        try (InputStream in = new FileInputStream(file)) {
+            int offset = 0;
+            while (offset < data.length) {
+                int read = in.read(data, offset, data.length - offset);
+                if (read < 0) throw new IOException("unexpected end of file.");
+                offset += read;
+            }
+        }
+        return data;
+    }
+}
@@ -217,18 +217,25 @@ public class VideoConverter {
                 }
             }
 
-            try (InputStream in = new FileInputStream(inPath); OutputStream out = new FileOutputStream(outPath)) {
+            // written under a temporary name and renamed, so that the file exists only when it is complete.
+            File tmp = new File(outPath + ".tmp");
+            try (InputStream in = new FileInputStream(inPath); OutputStream out = new FileOutputStream(tmp)) {
                 byte[] buffer = new byte[1024];
                 int read;
                 while ((read = in.read(buffer)) != -1) {
                     out.write(buffer, 0, read);
                 }
                 out.flush();
-                registerFile(outPath);
-                logger.info("created a corrected data: {}", outPath);
             } catch (IOException e) {
+                tmp.delete();
                 throw new IOException("failed to copy file.", e);
             }
+            if (!tmp.renameTo(new File(outPath))) {
+                tmp.delete();
+                throw new IOException("failed to rename " + tmp.getPath());
+            }
+            registerFile(outPath);
+            logger.info("created a corrected data: {}", outPath);
         }
     }
 
@@ -30,8 +30,16 @@ import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -41,6 +49,13 @@ import org.json.JSONObject;
  */
 public class HttpConnector {
     private final static long CHECK_STATUS_PERIOD_MS = 50;
+    private final static int LIST_PAGE_SIZE = 100;
+    // seconds to wait for the response of checkForUpdates in addition to its wait timeout
+    private final static int CHECK_FOR_UPDATES_MARGIN = 10;
+    // milliseconds to wait for the state, so that a hung endpoint does not block its caller
+    private final static int STATE_TIMEOUT_MS = 5000;
+    // directory of the camera under DCIM in a file URL
+    private final static Pattern DCIM_DIR = Pattern.compile("/\\d{3}RICOH/");
     private String mIpAddress = null;
 
     private String mContinuationToken = null;
@@ -176,32 +191,105 @@ public class HttpConnector {
      * @return Media file list
      */
     public ArrayList<ImageInfo> getList() {
-        ArrayList<ImageInfo> imageInfoList = new ArrayList<>();
+        final ArrayList<ImageInfo> imageInfoList = new ArrayList<>();
+        getList(new HttpListListener() {
+            @Override
+            public void onListed(List<ImageInfo> imageInfoPage) {
+                imageInfoList.addAll(imageInfoPage);
+            }
+        });
+        return imageInfoList;
+    }
 
-        for (int continuation = 0; continuation < 10; continuation++) {
-            ArrayList<ImageInfo> receivedImageInfo = getListInternal(10, imageInfoList.size());
-            imageInfoList.addAll(receivedImageInfo);
-            if (receivedImageInfo.size() < 10) {
-                break;
+    /**
+     * Acquire list of media files on device page by page<p> The request of the next page is sent
+     * while the current page is parsed and passed to the listener.
+     *
+     * @param listener Listener which receives each page as soon as it is parsed
+     * @return Number of the acquired media files (-1 is returned if the listing failed on the way)
+     */
+    public int getList(HttpListListener listener) {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        int received = 0;
+        boolean failed = false;
+
+        try {
+            int startPosition = 0;
+            int totalEntries = -1;
+            Future<String> current = executor.submit(createListRequest(LIST_PAGE_SIZE, startPosition));
+
+            while (current != null) {
+                String responseData = current.get();
+                int nextPosition = startPosition + LIST_PAGE_SIZE;
+                // the number of the files is unknown until the first page is parsed
+                Future<String> next = null;
+                if (totalEntries < 0 || nextPosition < totalEntries) {
+                    next = executor.submit(createListRequest(LIST_PAGE_SIZE, nextPosition));
+                }
+
+                ArrayList<ImageInfo> imageInfoPage = new ArrayList<>();
+                try {
+                    totalEntries = parseList(responseData, imageInfoPage);
+                } catch (JSONException e) {
+                    e.printStackTrace();
+                    if (next != null) next.cancel(true);
+                    failed = true;
+                    break;
+                }
+                received += imageInfoPage.size();
+                if (!imageInfoPage.isEmpty()) {
+                    listener.onListed(imageInfoPage);
+                }
+
+                boolean hasNext = imageInfoPage.size() == LIST_PAGE_SIZE
+                        && (totalEntries < 0 || nextPosition < totalEntries);
+                if (!hasNext) {
+                    if (next != null) next.cancel(true);
+                    break;
+                }
+                current = next;
+                startPosition = nextPosition;
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            e.printStackTrace();
+            failed = true;
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+            failed = true;
+        } finally {
+            executor.shutdownNow();
         }
 
-        return imageInfoList;
+        return failed ? -1 : received;
     }
 
     /**
-     * Acquire media file list (limited number of items)
+     * Request of a page of media file list
      *
      * @param maxReceiveEntry Maximum number of files that can be acquired at once
-     * @param startPosition Set the previously acquired token to continue. Set null if acquiring for
-     * the first time.
-     * @return List of specified number of media files
+     * @param startPosition Position of the first file of the page
+     * @return Task which returns the response (null is returned if the request fails)
      */
-    private ArrayList<ImageInfo> getListInternal(int maxReceiveEntry, int startPosition) {
+    private Callable<String> createListRequest(final int maxReceiveEntry, final int startPosition) {
+        return new Callable<String>() {
+            @Override
+            public String call() {
+                return requestList(maxReceiveEntry, startPosition);
+            }
+        };
+    }
+
+    /**
+     * Request a page of media file list
+     *
+     * @param maxReceiveEntry Maximum number of files that can be acquired at once
+     * @param startPosition Position of the first file of the page
+     * @return Response (null is returned if the request fails)
+     */
+    private String requestList(int maxReceiveEntry, int startPosition) {
         HttpURLConnection postConnection = createHttpConnection("POST", "/osc/commands/execute");
         JSONObject input = new JSONObject();
-        String responseData;
-        ArrayList<ImageInfo> imageInfoList = new ArrayList<>();
         InputStream is = null;
 
         try {
@@ -220,54 +308,9 @@ public class HttpConnector {
             os.flush();
             os.close();
 
+            // the response is read to the end, so that the connection is kept alive for the next page
             is = postConnection.getInputStream();
-            responseData = InputStreamToString(is);
-
-            // parse JSON data
-            JSONObject output = new JSONObject(responseData);
-            String status = output.getString("state");
-
-            if (status.equals("done")) {
-                JSONObject results = output.getJSONObject("results");
-                JSONArray entries = results.getJSONArray("entries");
-                int entrySize = entries.length();
-                try {
-                    mContinuationToken = results.getString("continuationToken");
-                } catch (JSONException e) {
-                    mContinuationToken = null;
-                }
-
-                for (int index = 0; index < entrySize; index++) {
-                    JSONObject entry = entries.getJSONObject(index);
-                    ImageInfo imageInfo = new ImageInfo();
-
-                    String name = entry.getString("name");
-                    imageInfo.setFileName(name);
-
-                    String id = entry.getString("fileUrl");
-                    imageInfo.setFileId(id);
-
-                    long size = Long.parseLong(entry.getString("size"));
-                    imageInfo.setFileSize(size);
-
-                    int width = entry.getInt("width");
-                    imageInfo.setWidth(width);
-
-                    int height = entry.getInt("height");
-                    imageInfo.setHeight(height);
-
-                    try {
-                        entry.getInt("_recordTime");
-                        imageInfo.setFileFormat(ImageInfo.FILE_FORMAT_CODE_EXIF_MPEG);
-                        String projectionType = entry.getString("_projectionType");
-                        imageInfo.setProjectionType(projectionType);
-                    } catch (JSONException e) {
-                        imageInfo.setFileFormat(ImageInfo.FILE_FORMAT_CODE_EXIF_JPEG);
-                    }
-
-                    imageInfoList.add(imageInfo);
-                }
-            }
+            return InputStreamToString(is);
         } catch (IOException e) {
             e.printStackTrace();
         } catch (JSONException e) {
@@ -281,8 +324,104 @@ public class HttpConnector {
                 }
             }
         }
+        return null;
+    }
 
-        return imageInfoList;
+    /**
+     * Acquire URL of DCIM on device<p> The file URL of a media file is this URL followed by its
+     * path under DCIM, such as "/100RICOH/R0010001.JPG".
+     *
+     * @return URL without the trailing slash (null is returned if there is no media file or acquisition fails)
+     */
+    public String getDcimUrl() {
+        ArrayList<ImageInfo> imageInfoPage = new ArrayList<>();
+        try {
+            parseList(requestList(1, 0), imageInfoPage);
+        } catch (JSONException e) {
+            e.printStackTrace();
+            return null;
+        }
+        if (imageInfoPage.isEmpty()) {
+            return null;
+        }
+
+        return toDcimUrl(imageInfoPage.get(0).getFileId());
+    }
+
+    /**
+     * Acquire URL of DCIM from the file URL of a media file
+     *
+     * @param fileUrl File URL such as "http://127.0.0.1:8080/files/.../100RICOH/R0010001.JPG"
+     * @return URL without the trailing slash (null is returned if the URL is not of a file in DCIM)
+     */
+    public static String toDcimUrl(String fileUrl) {
+        Matcher matcher = DCIM_DIR.matcher(fileUrl);
+        if (!matcher.find()) {
+            return null;
+        }
+        return fileUrl.substring(0, matcher.start());
+    }
+
+    /**
+     * Parse a page of media file list
+     *
+     * @param responseData Response of camera.listFiles
+     * @param imageInfoList List to which the media files of the page are added
+     * @return Total number of the media files on device (-1 is returned if it is unknown)
+     * @throws JSONException if the request failed or the response is broken
+     */
+    private int parseList(String responseData, ArrayList<ImageInfo> imageInfoList) throws JSONException {
+        if (responseData == null) {
+            throw new JSONException("no response of camera.listFiles");
+        }
+        // parse JSON data
+        JSONObject output = new JSONObject(responseData);
+        String status = output.getString("state");
+        if (!status.equals("done")) {
+            throw new JSONException("camera.listFiles is " + status);
+        }
+
+        JSONObject results = output.getJSONObject("results");
+        JSONArray entries = results.getJSONArray("entries");
+        int entrySize = entries.length();
+        int totalEntries = results.optInt("totalEntries", -1);
+        mContinuationToken = results.optString("continuationToken", null);
+
+        for (int index = 0; index < entrySize; index++) {
+            JSONObject entry = entries.getJSONObject(index);
+            ImageInfo imageInfo = new ImageInfo();
+
+            String name = entry.getString("name");
+            imageInfo.setFileName(name);
+
+            String id = entry.getString("fileUrl");
+            imageInfo.setFileId(id);
+
+            long size = Long.parseLong(entry.getString("size"));
+            imageInfo.setFileSize(size);
+
+            int width = entry.getInt("width");
+            imageInfo.setWidth(width);
+
+            int height = entry.getInt("height");
+            imageInfo.setHeight(height);
+
+            String captureDate = entry.optString("dateTimeZone", null);
+            imageInfo.setCaptureDate(captureDate);
+
+            try {
+                entry.getInt("_recordTime");
+                imageInfo.setFileFormat(ImageInfo.FILE_FORMAT_CODE_EXIF_MPEG);
+                String projectionType = entry.getString("_projectionType");
+                imageInfo.setProjectionType(projectionType);
+            } catch (JSONException e) {
+                imageInfo.setFileFormat(ImageInfo.FILE_FORMAT_CODE_EXIF_JPEG);
+            }
+
+            imageInfoList.add(imageInfo);
+        }
+
+        return totalEntries;
     }
 
     /**
@@ -935,6 +1074,135 @@ public class HttpConnector {
         return update;
     }
 
+    /**
+     * Acquire fingerprint of device status
+     *
+     * @return Fingerprint (null is returned if acquisition fails or times out)
+     */
+    public String getStateFingerprint() {
+        HttpURLConnection postConnection = createHttpConnection("POST", "/osc/state");
+        InputStream is = null;
+
+        try {
+            postConnection.setConnectTimeout(STATE_TIMEOUT_MS);
+            postConnection.setReadTimeout(STATE_TIMEOUT_MS);
+            postConnection.connect();
+
+            is = postConnection.getInputStream();
+            JSONObject output = new JSONObject(InputStreamToString(is));
+            return output.getString("fingerprint");
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (JSONException e) {
+            e.printStackTrace();
+        } finally {
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Acquire signature of the set of media files<p> It consists of the latest file and the number of the
+     * files, so that it changes when a file is added or deleted, but not when the battery or the
+     * capture status changes.
+     *
+     * @return Signature (null is returned if acquisition fails)
+     */
+    public String getFileSetSignature() {
+        HttpURLConnection postConnection = createHttpConnection("POST", "/osc/state");
+        String latestFile;
+        InputStream is = null;
+
+        try {
+            postConnection.setConnectTimeout(STATE_TIMEOUT_MS);
+            postConnection.setReadTimeout(STATE_TIMEOUT_MS);
+            postConnection.connect();
+
+            is = postConnection.getInputStream();
+            JSONObject state = new JSONObject(InputStreamToString(is)).getJSONObject("state");
+            // the name of the property differs between the versions of the API
+            latestFile = state.optString("_latestFileUrl", state.optString("_latestFileUri", ""));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } catch (JSONException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        int totalEntries;
+        try {
+            totalEntries = parseList(requestList(1, 0), new ArrayList<ImageInfo>());
+        } catch (JSONException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return latestFile + "|" + totalEntries;
+    }
+
+    /**
+     * Wait for updates to device status<p> The device responds as soon as the status changes, or
+     * when the wait timeout expires.
+     *
+     * @param stateFingerprint Fingerprint of the known status
+     * @param waitTimeout Maximum waiting time in seconds
+     * @return Fingerprint of the current status and the throttle timeout (null is returned if the request fails)
+     */
+    public UpdateInfo checkForUpdates(String stateFingerprint, int waitTimeout) {
+        HttpURLConnection postConnection = createHttpConnection("POST", "/osc/checkForUpdates");
+        JSONObject input = new JSONObject();
+        InputStream is = null;
+
+        try {
+            // send HTTP POST
+            input.put("stateFingerprint", stateFingerprint);
+            input.put("waitTimeout", waitTimeout);
+
+            postConnection.setReadTimeout((waitTimeout + CHECK_FOR_UPDATES_MARGIN) * 1000);
+            OutputStream os = postConnection.getOutputStream();
+            os.write(input.toString().getBytes());
+            postConnection.connect();
+            os.flush();
+            os.close();
+
+            is = postConnection.getInputStream();
+            JSONObject output = new JSONObject(InputStreamToString(is));
+            UpdateInfo updateInfo = new UpdateInfo();
+            updateInfo.setStateFingerprint(output.getString("stateFingerprint"));
+            updateInfo.setThrottleTimeout(output.optInt("throttleTimeout", 0));
+            return updateInfo;
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (JSONException e) {
+            e.printStackTrace();
+        } finally {
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        return null;
+    }
+
     /**
      * Generate connection destination URL
      *
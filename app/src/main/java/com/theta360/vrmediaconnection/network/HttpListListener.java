@@ -0,0 +1,30 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection.network;
+
+import java.util.List;
+
+/**
+ * Media file list listener class
+ */
+public interface HttpListListener {
+    /**
+     * Notifies you of a page of media file list
+     * @param imageInfoPage Media files of the page
+     */
+    void onListed(List<ImageInfo> imageInfoPage);
+}
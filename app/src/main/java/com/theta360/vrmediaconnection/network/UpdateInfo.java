@@ -0,0 +1,57 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection.network;
+
+/**
+ * Information class of the result of checkForUpdates
+ */
+public class UpdateInfo {
+    String mStateFingerprint = null;
+    int mThrottleTimeout = 0;
+
+    /**
+     * Acquire fingerprint of the current device status
+     * @return Fingerprint
+     */
+    public String getStateFingerprint() {
+        return mStateFingerprint;
+    }
+
+    /**
+     * Set fingerprint of the current device status
+     * @param stateFingerprint Fingerprint
+     */
+    public void setStateFingerprint(String stateFingerprint) {
+        mStateFingerprint = stateFingerprint;
+    }
+
+    /**
+     * Acquire time to wait before the next checkForUpdates
+     * @return Throttle timeout (unit: seconds)
+     */
+    public int getThrottleTimeout() {
+        return mThrottleTimeout;
+    }
+
+    /**
+     * Set time to wait before the next checkForUpdates
+     * @param throttleTimeout Throttle timeout (unit: seconds)
+     */
+    public void setThrottleTimeout(int throttleTimeout) {
+        mThrottleTimeout = throttleTimeout;
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ByteRangeTest {
+
+    private static final long SIZE = 10000;
+
+    @Test
+    public void parsesSingleRange() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=0-99", SIZE);
+        assertEquals("[0-99]", ranges.toString());
+        assertEquals(100, ranges.get(0).getLength());
+        assertEquals("bytes 0-99/10000", ranges.get(0).toContentRange(SIZE));
+    }
+
+    @Test
+    public void parsesOpenAndSuffixRanges() {
+        assertEquals("[9500-9999]", ByteRange.parse("bytes=9500-", SIZE).toString());
+        assertEquals("[9500-9999]", ByteRange.parse("bytes=-500", SIZE).toString());
+        // a suffix longer than the resource is the whole resource
+        assertEquals("[0-9999]", ByteRange.parse("bytes=-20000", SIZE).toString());
+    }
+
+    @Test
+    public void clipsRangeToResource() {
+        assertEquals("[9000-9999]", ByteRange.parse("bytes=9000-20000", SIZE).toString());
+    }
+
+    @Test
+    public void parsesMultipleRangesInRequestOrder() {
+        List<ByteRange> ranges = ByteRange.parse(" Bytes=5000-5999, 0-99 ,-1", SIZE);
+        assertEquals("[5000-5999, 0-99, 9999-9999]", ranges.toString());
+    }
+
+    @Test
+    public void dropsUnsatisfiableRanges() {
+        assertEquals("[0-9]", ByteRange.parse("bytes=10000-10010,0-9", SIZE).toString());
+        assertTrue(ByteRange.parse("bytes=10000-", SIZE).isEmpty());
+        assertTrue(ByteRange.parse("bytes=-0", SIZE).isEmpty());
+    }
+
+    @Test
+    public void ignoresMalformedHeader() {
+        assertNull(ByteRange.parse("items=0-99", SIZE));
+        assertNull(ByteRange.parse("bytes=100", SIZE));
+        assertNull(ByteRange.parse("bytes=99-0", SIZE));
+        assertNull(ByteRange.parse("bytes=a-b", SIZE));
+    }
+
+    @Test
+    public void ignoresHeaderWithoutRange() {
+        assertNull(ByteRange.parse("bytes=", SIZE));
+        assertNull(ByteRange.parse("bytes=,", SIZE));
+        assertNull(ByteRange.parse("bytes= , ,", SIZE));
+        // empty elements of the list are allowed
+        assertEquals("[0-99]", ByteRange.parse("bytes=,0-99,", SIZE).toString());
+    }
+
+    @Test
+    public void ignoresTooManyRanges() {
+        StringBuilder header = new StringBuilder("bytes=0-0");
+        for (int i = 1; i < 17; i++) {
+            header.append(',').append(i).append('-').append(i);
+        }
+        assertNull(ByteRange.parse(header.toString(), SIZE));
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import com.theta360.vrmediaconnection.network.ImageInfo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CatalogSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsWhatIsWritten() throws IOException {
+        File file = new File(folder.getRoot(), "catalog.bin");
+        ImageInfo image = info("R0010001.JPG", ImageInfo.FILE_FORMAT_CODE_EXIF_JPEG, "2018:10:01 12:34:56+09:00",
+                ImageInfo.PROJECTION_TYPE_EQUI);
+        // a date and a projection may be unknown
+        ImageInfo video = info("R0010002.MP4", ImageInfo.FILE_FORMAT_CODE_EXIF_MPEG, null, null);
+
+        assertTrue(new CatalogSnapshot("FIG_0001", 1538364896000L, Arrays.asList(image, video)).write(file));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        CatalogSnapshot snapshot = CatalogSnapshot.read(file);
+        assertEquals("FIG_0001", snapshot.getFingerprint());
+        assertEquals(1538364896000L, snapshot.getDcimStamp());
+        List<ImageInfo> files = snapshot.getFiles();
+        assertEquals(2, files.size());
+        assertInfoEquals(image, files.get(0));
+        assertInfoEquals(video, files.get(1));
+    }
+
+    @Test
+    public void replacesPreviousSnapshot() throws IOException {
+        File file = new File(folder.getRoot(), "catalog.bin");
+        ImageInfo image = info("R0010001.JPG", ImageInfo.FILE_FORMAT_CODE_EXIF_JPEG, null, null);
+        assertTrue(new CatalogSnapshot("FIG_0001", 1L, Arrays.asList(image, image)).write(file));
+        assertTrue(new CatalogSnapshot("FIG_0002", 2L, Arrays.asList(image)).write(file));
+
+        CatalogSnapshot snapshot = CatalogSnapshot.read(file);
+        assertEquals("FIG_0002", snapshot.getFingerprint());
+        assertEquals(1, snapshot.getFiles().size());
+    }
+
+    @Test
+    public void returnsNullForMissingFile() {
+        assertNull(CatalogSnapshot.read(new File(folder.getRoot(), "missing.bin")));
+    }
+
+    @Test
+    public void returnsNullForUnknownFile() throws IOException {
+        File file = folder.newFile();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.writeInt(0x12345678);
+            raf.writeInt(1);
+        }
+        assertNull(CatalogSnapshot.read(file));
+    }
+
+    @Test
+    public void returnsNullForTruncatedFile() throws IOException {
+        File file = new File(folder.getRoot(), "catalog.bin");
+        ImageInfo image = info("R0010001.JPG", ImageInfo.FILE_FORMAT_CODE_EXIF_JPEG, null, null);
+        assertTrue(new CatalogSnapshot("FIG_0001", 1L, Arrays.asList(image)).write(file));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+        assertNull(CatalogSnapshot.read(file));
+    }
+
+    private static ImageInfo info(String name, String format, String date, String projection) {
+        ImageInfo info = new ImageInfo();
+        info.setFileName(name);
+        info.setFileId("100RICOH/" + name);
+        info.setFileSize(123456789L);
+        info.setWidth(5376);
+        info.setHeight(2688);
+        info.setCaptureDate(date);
+        info.setFileFormat(format);
+        info.setProjectionType(projection);
+        return info;
+    }
+
+    private static void assertInfoEquals(ImageInfo expected, ImageInfo actual) {
+        assertEquals(expected.getFileName(), actual.getFileName());
+        assertEquals(expected.getFileId(), actual.getFileId());
+        assertEquals(expected.getFileSize(), actual.getFileSize());
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        assertEquals(expected.getCaptureDate(), actual.getCaptureDate());
+        assertEquals(expected.getFileFormat(), actual.getFileFormat());
+        assertEquals(expected.getProjectionType(), actual.getProjectionType());
+    }
+}
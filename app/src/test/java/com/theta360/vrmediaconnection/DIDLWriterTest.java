@@ -0,0 +1,160 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import org.fourthline.cling.support.contentdirectory.DIDLParser;
+import org.fourthline.cling.support.model.DIDLContent;
+import org.fourthline.cling.support.model.DIDLObject;
+import org.fourthline.cling.support.model.Res;
+import org.fourthline.cling.support.model.WriteStatus;
+import org.fourthline.cling.support.model.container.Container;
+import org.fourthline.cling.support.model.dlna.DLNAProtocolInfo;
+import org.fourthline.cling.support.model.item.ImageItem;
+import org.fourthline.cling.support.model.item.Item;
+import org.fourthline.cling.support.model.item.VideoItem;
+import org.junit.Test;
+
+import java.net.URI;
+
+import static org.junit.Assert.*;
+
+/**
+ * DIDLWriter is compared with DIDLParser of Cling, by parsing both documents back.
+ */
+public class DIDLWriterTest {
+
+    // characters which have to be escaped in a text or in an attribute
+    private static final String SPECIAL = "Tom's <\"A&B\"> tour";
+
+    @Test
+    public void writesWhatDIDLParserGenerates() throws Exception {
+        Container container = container();
+        Item video = item(new VideoItem(), "video/0", Constants.ProtocolInfo.MP4, 12345678L, "5376x2688");
+        Item image = item(new ImageItem(), "image/0", Constants.ProtocolInfo.JPEG, 4321L, null);
+
+        String written = new DIDLWriter().begin(DIDLFilter.ALL)
+                .container(container, 2)
+                .item(video)
+                .item(image)
+                .end();
+
+        DIDLContent content = new DIDLContent();
+        container.setChildCount(2);
+        content.addContainer(container);
+        content.addItem(video);
+        content.addItem(image);
+        String generated = new DIDLParser().generate(content);
+
+        DIDLContent expected = new DIDLParser().parse(generated);
+        DIDLContent actual = new DIDLParser().parse(written);
+        assertEquals(1, actual.getContainers().size());
+        assertContainerEquals(expected.getContainers().get(0), actual.getContainers().get(0));
+        assertEquals(2, actual.getItems().size());
+        for (int i = 0; i < 2; i++) {
+            assertItemEquals(expected.getItems().get(i), actual.getItems().get(i));
+        }
+        assertEquals(SPECIAL, actual.getItems().get(0).getTitle());
+    }
+
+    @Test
+    public void escapesAsDIDLParser() {
+        String written = new DIDLWriter().begin(DIDLFilter.ALL)
+                .item(item(new ImageItem(), "image/0", Constants.ProtocolInfo.JPEG, 1L, null))
+                .end();
+
+        assertTrue(written.contains("<dc:title>Tom's &lt;\"A&amp;B\"&gt; tour</dc:title>"));
+        assertFalse(written.contains("&apos;"));
+    }
+
+    @Test
+    public void writesOnlyFilteredProperties() throws Exception {
+        String written = new DIDLWriter().begin(DIDLFilter.parse("dc:date"))
+                .item(item(new VideoItem(), "video/0", Constants.ProtocolInfo.MP4, 1L, "5376x2688"))
+                .end();
+
+        Item item = new DIDLParser().parse(written).getItems().get(0);
+        assertEquals(SPECIAL, item.getTitle());
+        assertEquals("2018-10-01T12:34:56+09:00", item.getFirstPropertyValue(DIDLObject.Property.DC.DATE.class));
+        assertNull(item.getCreator());
+        assertNull(item.getFirstPropertyValue(DIDLObject.Property.UPNP.ALBUM_ART_URI.class));
+        assertTrue(item.getResources().isEmpty());
+    }
+
+    private static Container container() {
+        Container container = new Container();
+        container.setClazz(new DIDLObject.Class("object.container"));
+        container.setId(Contents.ORIGINAL_VIDEO_ID);
+        container.setParentID(Contents.ROOT_ID);
+        container.setTitle("Original & Video");
+        container.setCreator(Constants.Content.CREATOR);
+        container.setRestricted(true);
+        container.setSearchable(true);
+        container.setWriteStatus(WriteStatus.NOT_WRITABLE);
+        return container;
+    }
+
+    // the same properties as DIDLItemBuilder gives
+    private static Item item(Item item, String id, String protocolInfo, long size, String resolution) {
+        String uri = "http://192.168.1.1:8888/" + id + ".file";
+        Res res = new Res(new DLNAProtocolInfo(protocolInfo), size, uri);
+        res.setResolution(resolution);
+        item.setId(id);
+        item.setParentID(Contents.ORIGINAL_VIDEO_ID);
+        item.setTitle(SPECIAL);
+        item.setCreator(Constants.Content.CREATOR);
+        item.setClazz(item instanceof VideoItem ? VideoItem.CLASS : ImageItem.CLASS);
+        item.setRestricted(true);
+        item.addResource(res);
+        item.addProperty(new DIDLObject.Property.UPNP.ALBUM_ART_URI(URI.create(uri + "?type=thumb")));
+        item.addProperty(new DIDLObject.Property.DC.DATE("2018-10-01T12:34:56+09:00"));
+        return item;
+    }
+
+    private static void assertContainerEquals(Container expected, Container actual) {
+        assertObjectEquals(expected, actual);
+        assertEquals(expected.getChildCount(), actual.getChildCount());
+        assertEquals(expected.isSearchable(), actual.isSearchable());
+    }
+
+    private static void assertItemEquals(Item expected, Item actual) {
+        assertObjectEquals(expected, actual);
+        assertEquals(expected.getRefID(), actual.getRefID());
+        assertEquals(expected.getFirstPropertyValue(DIDLObject.Property.UPNP.ALBUM_ART_URI.class),
+                actual.getFirstPropertyValue(DIDLObject.Property.UPNP.ALBUM_ART_URI.class));
+        assertEquals(expected.getFirstPropertyValue(DIDLObject.Property.DC.DATE.class),
+                actual.getFirstPropertyValue(DIDLObject.Property.DC.DATE.class));
+        assertEquals(expected.getResources().size(), actual.getResources().size());
+        for (int i = 0; i < expected.getResources().size(); i++) {
+            Res expectedRes = expected.getResources().get(i);
+            Res actualRes = actual.getResources().get(i);
+            assertEquals(expectedRes.getProtocolInfo().toString(), actualRes.getProtocolInfo().toString());
+            assertEquals(expectedRes.getSize(), actualRes.getSize());
+            assertEquals(expectedRes.getResolution(), actualRes.getResolution());
+            assertEquals(expectedRes.getValue(), actualRes.getValue());
+        }
+    }
+
+    private static void assertObjectEquals(DIDLObject expected, DIDLObject actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getParentID(), actual.getParentID());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getCreator(), actual.getCreator());
+        assertEquals(expected.getClazz().getValue(), actual.getClazz().getValue());
+        assertEquals(expected.isRestricted(), actual.isRestricted());
+        assertEquals(expected.getWriteStatus(), actual.getWriteStatus());
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class ExifThumbnailTest {
+
+    private static final byte[] THUMBNAIL = {(byte) 0xFF, (byte) 0xD8, 1, 2, 3, 4, (byte) 0xFF, (byte) 0xD9};
+    // SOI, the APP1 marker and its length, and the Exif header precede the TIFF header
+    private static final int TIFF_OFFSET = 2 + 4 + 6;
+    // TIFF header, an empty IFD0 and IFD1 of two entries
+    private static final int THUMBNAIL_OFFSET = 8 + 6 + 30;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void findsThumbnailOfLittleEndianExif() throws IOException {
+        File file = write(jpeg(tiff(ByteOrder.LITTLE_ENDIAN, true)));
+
+        ByteRange range = ExifThumbnail.find(file);
+        assertEquals(TIFF_OFFSET + THUMBNAIL_OFFSET, range.getStart());
+        assertEquals(THUMBNAIL.length, range.getLength());
+    }
+
+    @Test
+    public void findsThumbnailOfBigEndianExif() throws IOException {
+        File file = write(jpeg(tiff(ByteOrder.BIG_ENDIAN, true)));
+
+        ByteRange range = ExifThumbnail.find(file);
+        assertEquals(TIFF_OFFSET + THUMBNAIL_OFFSET, range.getStart());
+        assertEquals(THUMBNAIL.length, range.getLength());
+    }
+
+    @Test
+    public void returnsNullWithoutIfd1() throws IOException {
+        assertNull(ExifThumbnail.find(write(jpeg(tiff(ByteOrder.LITTLE_ENDIAN, false)))));
+    }
+
+    @Test
+    public void returnsNullWithoutExif() throws IOException {
+        byte[] noExif = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xDA, 0, 2, (byte) 0xFF, (byte) 0xD9};
+        assertNull(ExifThumbnail.find(write(noExif)));
+        assertNull(ExifThumbnail.find(write(new byte[]{'P', 'K', 3, 4})));
+        assertNull(ExifThumbnail.find(write(new byte[0])));
+    }
+
+    @Test
+    public void returnsNullForTruncatedTiff() throws IOException {
+        byte[] tiff = tiff(ByteOrder.LITTLE_ENDIAN, true);
+        byte[] truncated = new byte[THUMBNAIL_OFFSET + 2];
+        System.arraycopy(tiff, 0, truncated, 0, truncated.length);
+        assertNull(ExifThumbnail.find(write(jpeg(truncated))));
+    }
+
+    private File write(byte[] data) throws IOException {
+        File file = folder.newFile();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+        return file;
+    }
+
+    private static byte[] jpeg(byte[] tiff) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0xFF);
+        out.write(0xD8);
+        out.write(0xFF);
+        out.write(0xE1);
+        int length = 2 + 6 + tiff.length;
+        out.write(length >> 8);
+        out.write(length & 0xFF);
+        out.write(new byte[]{'E', 'x', 'i', 'f', 0, 0}, 0, 6);
+        out.write(tiff, 0, tiff.length);
+        // the image data follows the start of scan
+        out.write(new byte[]{(byte) 0xFF, (byte) 0xDA, 0, 2, 5, 6, (byte) 0xFF, (byte) 0xD9}, 0, 8);
+        return out.toByteArray();
+    }
+
+    private static byte[] tiff(ByteOrder order, boolean withIfd1) {
+        ByteBuffer buffer = ByteBuffer.allocate(THUMBNAIL_OFFSET + THUMBNAIL.length).order(order);
+        buffer.put(order == ByteOrder.LITTLE_ENDIAN ? (byte) 'I' : (byte) 'M');
+        buffer.put(order == ByteOrder.LITTLE_ENDIAN ? (byte) 'I' : (byte) 'M');
+        buffer.putShort((short) 42);
+        buffer.putInt(8);
+        // IFD0 without entries, linked to IFD1
+        buffer.putShort((short) 0);
+        buffer.putInt(withIfd1 ? 14 : 0);
+        // IFD1: JPEGInterchangeFormat and JPEGInterchangeFormatLength as LONG
+        buffer.putShort((short) 2);
+        buffer.putShort((short) 0x0201).putShort((short) 4).putInt(1).putInt(THUMBNAIL_OFFSET);
+        buffer.putShort((short) 0x0202).putShort((short) 4).putInt(1).putInt(THUMBNAIL.length);
+        buffer.putInt(0);
+        buffer.put(THUMBNAIL);
+        return buffer.array();
+    }
+}
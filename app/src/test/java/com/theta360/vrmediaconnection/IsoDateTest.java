@@ -0,0 +1,74 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class IsoDateTest {
+
+    private static final TimeZone TOKYO = TimeZone.getTimeZone("Asia/Tokyo");
+    // 2018-10-01T00:00:00Z
+    private static final long OCTOBER_1 = 1538352000000L;
+
+    @Test
+    public void parsesDatesOfAnyOffsetToTheSameInstant() {
+        assertEquals(OCTOBER_1, IsoDate.parse("2018-10-01T00:00:00Z", TOKYO).getStart());
+        assertEquals(OCTOBER_1, IsoDate.parse("2018-10-01T09:00:00+09:00", TOKYO).getStart());
+        assertEquals(OCTOBER_1, IsoDate.parse("2018-09-30T19:00:00-0500", TOKYO).getStart());
+        // without an offset, in the given time zone
+        assertEquals(OCTOBER_1, IsoDate.parse("2018-10-01T09:00:00", TOKYO).getStart());
+    }
+
+    @Test
+    public void ordersDatesOfMixedOffsetsByInstant() {
+        // the strings are in the opposite order of the instants
+        IsoDate tokyo = IsoDate.parse("2018-10-01T08:00:00+09:00", TOKYO);
+        IsoDate newYork = IsoDate.parse("2018-09-30T20:00:00-04:00", TOKYO);
+        assertTrue("2018-10-01T08:00:00+09:00".compareTo("2018-09-30T20:00:00-04:00") > 0);
+        assertTrue(tokyo.getStart() < newYork.getStart());
+    }
+
+    @Test
+    public void spansThePrecisionOfTheDate() {
+        IsoDate day = IsoDate.parse("2018-10-01", TOKYO);
+        assertEquals(OCTOBER_1 - 9 * 3600000L, day.getStart());
+        assertEquals(day.getStart() + 24 * 3600000L, day.getEnd());
+        assertEquals(60000L, span(IsoDate.parse("2018-10-01T09:00+09:00", TOKYO)));
+        assertEquals(1000L, span(IsoDate.parse("2018-10-01T09:00:00+09:00", TOKYO)));
+        IsoDate millis = IsoDate.parse("2018-10-01T09:00:00.5+09:00", TOKYO);
+        assertEquals(OCTOBER_1 + 500, millis.getStart());
+        assertEquals(1L, span(millis));
+    }
+
+    @Test
+    public void returnsNullForInvalidDate() {
+        assertNull(IsoDate.parse(null, TOKYO));
+        assertNull(IsoDate.parse("", TOKYO));
+        assertNull(IsoDate.parse("2018:10:01 09:00:00+09:00", TOKYO));
+        assertNull(IsoDate.parse("2018-13-01", TOKYO));
+        assertNull(IsoDate.parse("2018-10-01T25:00:00Z", TOKYO));
+        assertNull(IsoDate.parse("yesterday", TOKYO));
+    }
+
+    private static long span(IsoDate date) {
+        return date.getEnd() - date.getStart();
+    }
+}
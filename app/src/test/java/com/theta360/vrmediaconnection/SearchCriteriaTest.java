@@ -0,0 +1,120 @@
+/**
+ * Copyright 2018 Ricoh Company, Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.theta360.vrmediaconnection;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * The criteria is evaluated against an index whose relations match fixed ordinals.
+ */
+public class SearchCriteriaTest {
+
+    private static final String VIDEO = "upnp:class derivedfrom \"object.item.videoItem\"";
+    private static final String IMAGE = "upnp:class = \"object.item.imageItem\"";
+    private static final String TITLE = "dc:title contains \"R001\"";
+
+    private final FixedIndex index = new FixedIndex()
+            .put("upnp:class derivedfrom object.item.videoItem", 0, 1)
+            .put("upnp:class = object.item.imageItem", 2, 3)
+            .put("dc:title contains R001", 1, 2)
+            .put("dc:date exists true", 0, 2)
+            .put("dc:title = say \"hi\"", 3);
+
+    @Test
+    public void matchesAllForAsterisk() {
+        assertEquals(index.all(), SearchCriteria.parse("*").evaluate(index));
+        assertEquals(index.all(), SearchCriteria.parse(" ").evaluate(index));
+        assertEquals(index.all(), SearchCriteria.parse(null).evaluate(index));
+    }
+
+    @Test
+    public void evaluatesRelation() {
+        assertEquals(bits(0, 1), SearchCriteria.parse(VIDEO).evaluate(index));
+        assertEquals(bits(0, 2), SearchCriteria.parse("dc:date exists true").evaluate(index));
+    }
+
+    @Test
+    public void bindsAndTighterThanOr() {
+        // VIDEO or (IMAGE and TITLE)
+        assertEquals(bits(0, 1, 2), SearchCriteria.parse(VIDEO + " or " + IMAGE + " and " + TITLE).evaluate(index));
+        // (VIDEO or IMAGE) and TITLE
+        assertEquals(bits(1, 2), SearchCriteria.parse("(" + VIDEO + " or " + IMAGE + ") AND " + TITLE).evaluate(index));
+    }
+
+    @Test
+    public void unescapesQuotedValue() {
+        assertEquals(bits(3), SearchCriteria.parse("dc:title = \"say \\\"hi\\\"\"").evaluate(index));
+    }
+
+    @Test
+    public void rejectsMalformedCriteria() {
+        assertMalformed("dc:title contains");
+        assertMalformed("dc:title contains R001");
+        assertMalformed("dc:title contains \"R001");
+        assertMalformed("dc:date exists \"true\"");
+        assertMalformed("(" + VIDEO);
+        assertMalformed(VIDEO + " " + IMAGE);
+        assertMalformed(VIDEO + " and");
+    }
+
+    private static void assertMalformed(String criteria) {
+        try {
+            SearchCriteria.parse(criteria);
+            fail("parsed: " + criteria);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static BitSet bits(int... ordinals) {
+        BitSet bits = new BitSet();
+        for (int ordinal : ordinals) {
+            bits.set(ordinal);
+        }
+        return bits;
+    }
+
+    private static class FixedIndex extends SearchIndex {
+        private final Map<String, BitSet> relations = new HashMap<>();
+
+        FixedIndex put(String relation, int... ordinals) {
+            relations.put(relation, bits(ordinals));
+            return this;
+        }
+
+        @Override
+        public synchronized BitSet all() {
+            return bits(0, 1, 2, 3);
+        }
+
+        @Override
+        public synchronized BitSet match(String property, String operator, String value) {
+            BitSet matched = relations.get(property + " " + operator + " " + value);
+            if (matched == null) {
+                throw new IllegalArgumentException("unexpected relation: " + property + " " + operator + " " + value);
+            }
+            // the result is owned by the caller
+            return (BitSet) matched.clone();
+        }
+    }
+}